@@ -0,0 +1,69 @@
+package ru.hogwarts.school.benchmark;
+
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.SchoolApplication;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//Контекст приложения поверх H2 в памяти (профиль h2), заполненный синтетическими данными.
+public final class BenchmarkContext {
+    private static final String[] FIRST_NAMES = {"Анна", "Борис", "Гарри", "Гермиона", "Рон", "Драко", "Полумна", "Невилл"};
+    private static final int BATCH = 1_000;
+
+    private BenchmarkContext() {
+    }
+
+    public static ConfigurableApplicationContext start() {
+        return new SpringApplicationBuilder(SchoolApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.profiles.active=h2",
+                        "--path.to.avatars.folder=${java.io.tmpdir}/school-bench-avatars",
+                        "--logging.level.root=WARN");
+    }
+
+    //Полноценный сервер на случайном порту: Tomcat на пуле платформенных потоков или на виртуальных.
+    static ConfigurableApplicationContext startWeb(boolean virtualThreads) {
+        return new SpringApplicationBuilder(SchoolApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .run("--spring.profiles.active=h2",
+                        "--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--path.to.avatars.folder=${java.io.tmpdir}/school-bench-avatars",
+                        "--logging.level.root=WARN",
+                        "--logging.level.ru.hogwarts.school.metrics=INFO");
+    }
+
+    public static List<Student> seed(ConfigurableApplicationContext context, int students, int faculties) {
+        FacultyRepository facultyRepository = context.getBean(FacultyRepository.class);
+        StudentRepository studentRepository = context.getBean(StudentRepository.class);
+        List<Faculty> savedFaculties = new ArrayList<>();
+        for (int i = 0; i < faculties; i++) {
+            savedFaculties.add(facultyRepository.save(new Faculty(null, "цвет-" + i, "Факультет номер " + i)));
+        }
+        Random random = new Random(42);
+        List<Student> all = new ArrayList<>(students);
+        List<Student> batch = new ArrayList<>(BATCH);
+        for (int i = 0; i < students; i++) {
+            Student student = new Student(11 + random.nextInt(7),
+                    FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + i, null);
+            if (!savedFaculties.isEmpty()) {
+                student.setFaculty(savedFaculties.get(random.nextInt(savedFaculties.size())));
+            }
+            batch.add(student);
+            if (batch.size() == BATCH) {
+                all.addAll(studentRepository.saveAll(batch));
+                batch.clear();
+            }
+        }
+        all.addAll(studentRepository.saveAll(batch));
+        return all;
+    }
+}
@@ -0,0 +1,41 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.service.FacultyService;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FacultyServiceBenchmark {
+    private ConfigurableApplicationContext context;
+    private FacultyService facultyService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seed(context, 0, 50);
+        facultyService = context.getBean(FacultyService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    //Попадание в кеш maxLengthName; сам расчёт мерит FacultyMaxLengthBenchmark
+    @Benchmark
+    public String getFacultyWithMaxLengthCached() {
+        return facultyService.getFacultyWithMaxLength();
+    }
+
+    @Benchmark
+    public Integer streamIterate() {
+        return facultyService.streamIterate();
+    }
+}
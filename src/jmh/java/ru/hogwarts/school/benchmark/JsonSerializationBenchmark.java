@@ -0,0 +1,65 @@
+package ru.hogwarts.school.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+//Сериализация сущностей с их настройками @JsonIgnoreProperties.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonSerializationBenchmark {
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private Student student;
+    private Faculty faculty;
+    private Avatar avatar;
+    private List<Student> students;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        faculty = new Faculty(1L, "красный", "Гриффиндор");
+        student = new Student(12, "Гарри Поттер", 1L);
+        student.setFaculty(faculty);
+        avatar = new Avatar();
+        avatar.setId(1L);
+        avatar.setStudent(student);
+        avatar.setMediaType("image/png");
+        avatar.setFileSize(65536);
+        avatar.setContentHash("0f".repeat(32));
+        students = new ArrayList<>();
+        for (long i = 0; i < 100; i++) {
+            students.add(new Student(11 + (int) (i % 7), "Студент " + i, i));
+        }
+    }
+
+    @Benchmark
+    public byte[] student() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(student);
+    }
+
+    @Benchmark
+    public byte[] faculty() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(faculty);
+    }
+
+    @Benchmark
+    public byte[] avatar() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(avatar);
+    }
+
+    @Benchmark
+    public byte[] studentList() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(students);
+    }
+}
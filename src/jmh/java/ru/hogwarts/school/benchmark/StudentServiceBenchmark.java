@@ -0,0 +1,75 @@
+package ru.hogwarts.school.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.service.StudentService;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+//Методы StudentService на H2 с синтетическими данными.
+//legacy* - прежняя обработка в Java поверх findAll(), для сравнения с запросами в БД.
+//findAll() выполняется в каждом вызове, как в прежнем сервисе: цена загрузки и материализации сущностей
+//входит в замер. Отдельная транзакция только на чтение, чтобы контекст не рос между вызовами.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StudentServiceBenchmark {
+    @Param({"1000", "50000"})
+    int students;
+
+    private ConfigurableApplicationContext context;
+    private StudentService studentService;
+    private StudentRepository studentRepository;
+    private TransactionTemplate readOnly;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seed(context, students, 4);
+        studentService = context.getBean(StudentService.class);
+        studentRepository = context.getBean(StudentRepository.class);
+        readOnly = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        readOnly.setReadOnly(true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Collection<String> getWithNameOnA() {
+        return studentService.getWithNameOnA();
+    }
+
+    @Benchmark
+    public Double getAVGAge() {
+        return studentService.getAVGAge();
+    }
+
+    @Benchmark
+    public Collection<String> legacyWithNameOnA() {
+        return readOnly.execute(status -> studentRepository.findAll().stream()
+                .map(Student::getName)
+                .filter(name -> name.startsWith("А"))
+                .map(String::toUpperCase)
+                .sorted()
+                .toList());
+    }
+
+    @Benchmark
+    public double legacyAVGAge() {
+        return readOnly.execute(status -> studentRepository.findAll().stream()
+                .mapToInt(Student::getAge)
+                .average()
+                .orElse(0));
+    }
+}
@@ -0,0 +1,161 @@
+package ru.hogwarts.school.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.metrics.MetricsRegistry;
+import ru.hogwarts.school.model.Student;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+//Сравнение Tomcat на пуле платформенных потоков и на виртуальных потоках (spring.threads.virtual.enabled)
+//под числом одновременных клиентов больше размера пула (200 по умолчанию).
+//Режим virtual требует Java 21+: mvn -Pbenchmarks verify exec:exec -Djmh.include=ThreadingBenchmark
+//Закрепление виртуальных потоков (synchronized в драйвере H2 и т.п.) печатается через -Djdk.tracePinnedThreads
+//и считается в метрике jvm_threads_virtual_pinned_total (/actuator/prometheus).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Threads(256)
+@Fork(value = 1, jvmArgsAppend = {"-Djdk.tracePinnedThreads=short", "-Djdk.httpclient.connectionPoolSize=512"})
+public class ThreadingBenchmark {
+    private static final int STUDENTS = 1_000;
+    private static final int AVATARS = 200;
+    private static final String BOUNDARY = "jmh-boundary";
+    private static final String PINNED = "jvm.threads.virtual.pinned";
+
+    @Param({"platform", "virtual"})
+    String threads;
+
+    private ConfigurableApplicationContext context;
+    private HttpClient client;
+    private ObjectMapper objectMapper;
+    private String baseUrl;
+    private List<Student> students;
+    private byte[] avatarBody;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        boolean virtual = "virtual".equals(threads);
+        if (virtual && Runtime.version().feature() < 21) {
+            throw new IllegalStateException("Виртуальные потоки требуют Java 21+, текущая версия " + Runtime.version());
+        }
+        context = BenchmarkContext.startWeb(virtual);
+        students = BenchmarkContext.seed(context, STUDENTS, 4);
+        objectMapper = context.getBean(ObjectMapper.class);
+        int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        baseUrl = "http://localhost:" + port;
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        avatarBody = multipart(noisePng());
+        for (int i = 0; i < AVATARS; i++) {
+            upload(students.get(i).getId());
+        }
+    }
+
+    //Итог VirtualThreadPinningMonitor попадает в вывод прогона рядом с пропускной способностью режима
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if ("virtual".equals(threads)) {
+            MetricsRegistry.MetricsSnapshot snapshot = context.getBean(MetricsRegistry.class).snapshot();
+            snapshot.counters().stream()
+                    .filter(sample -> sample.name().equals(PINNED))
+                    .forEach(sample -> System.out.printf("%n%s: %.0f%n", PINNED, sample.value()));
+            snapshot.timers().stream()
+                    .filter(sample -> sample.name().equals(PINNED + ".duration"))
+                    .forEach(sample -> System.out.printf("%s.duration: count=%d p50=%.1f ms p99=%.1f ms max=%.1f ms%n",
+                            PINNED, sample.count(), sample.p50() * 1e3, sample.p99() * 1e3, sample.max() * 1e3));
+        }
+        context.close();
+    }
+
+    @Benchmark
+    public int uploadAvatar() throws Exception {
+        return upload(students.get(ThreadLocalRandom.current().nextInt(AVATARS)).getId());
+    }
+
+    @Benchmark
+    public int downloadAvatar() throws Exception {
+        long id = students.get(ThreadLocalRandom.current().nextInt(AVATARS)).getId();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/avatar/" + id + "/avatar-from-file"))
+                .GET().build();
+        return expectOk(client.send(request, HttpResponse.BodyHandlers.ofByteArray())).body().length;
+    }
+
+    @Benchmark
+    public int studentCrud() throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String body = "{\"name\":\"Студент " + random.nextInt() + "\",\"age\":" + (11 + random.nextInt(7)) + "}";
+        JsonNode created = objectMapper.readTree(expectOk(client.send(json("POST", "/student", body),
+                HttpResponse.BodyHandlers.ofString())).body());
+        long id = created.get("id").asLong();
+        expectOk(client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/student/" + id)).GET().build(),
+                HttpResponse.BodyHandlers.discarding()));
+        String update = "{\"id\":" + id + ",\"name\":\"Студент " + id + "\",\"age\":12}";
+        expectOk(client.send(json("PUT", "/student", update), HttpResponse.BodyHandlers.discarding()));
+        return expectOk(client.send(HttpRequest.newBuilder(URI.create(baseUrl + "/student/" + id)).DELETE().build(),
+                HttpResponse.BodyHandlers.discarding())).statusCode();
+    }
+
+    private int upload(long studentId) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/avatar/" + studentId + "/avatar"))
+                .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(avatarBody))
+                .build();
+        return expectOk(client.send(request, HttpResponse.BodyHandlers.discarding())).statusCode();
+    }
+
+    private HttpRequest json(String method, String path, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .header("Content-Type", "application/json")
+                .method(method, HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    private static <T> HttpResponse<T> expectOk(HttpResponse<T> response) {
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("HTTP " + response.statusCode() + " " + response.uri());
+        }
+        return response;
+    }
+
+    //Настоящий PNG около 32 КБ: файл неизвестного типа загрузка отклоняет (415).
+    //Шум почти не сжимается, поэтому размер близок к 3 байтам на точку.
+    private static byte[] noisePng() throws IOException {
+        BufferedImage image = new BufferedImage(104, 104, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", png);
+        return png.toByteArray();
+    }
+
+    private static byte[] multipart(byte[] image) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(image.length + 256);
+        body.write(("--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"avatar\"; filename=\"avatar.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        body.write(image);
+        body.write(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+}
@@ -0,0 +1,22 @@
+package ru.hogwarts.school.service;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+//В пакете service, потому что AvatarService.getExtensions доступен только внутри пакета.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AvatarExtensionBenchmark {
+    @Param({"photo.png", "archive.tar.gz", "no-extension", ""})
+    String fileName;
+
+    @Benchmark
+    public String getExtensions() {
+        return AvatarService.getExtensions(fileName);
+    }
+}
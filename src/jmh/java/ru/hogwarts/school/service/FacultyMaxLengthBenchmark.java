@@ -0,0 +1,39 @@
+package ru.hogwarts.school.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.benchmark.BenchmarkContext;
+
+import java.util.concurrent.TimeUnit;
+
+//В пакете service, потому что FacultyService.findFacultyWithMaxLength (расчёт без кеша) доступен только внутри пакета.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FacultyMaxLengthBenchmark {
+    @Param({"50", "1000"})
+    int faculties;
+
+    private ConfigurableApplicationContext context;
+    private FacultyService facultyService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start();
+        BenchmarkContext.seed(context, 0, faculties);
+        facultyService = context.getBean(FacultyService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String findFacultyWithMaxLength() {
+        return facultyService.findFacultyWithMaxLength();
+    }
+}
@@ -0,0 +1,146 @@
+package ru.hogwarts.school.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//Данные для прогона. Заполняются через HTTP API, как это сделали бы клиенты: факультеты - POST /faculty,
+//студенты - POST /student/import, аватары - POST /avatar/{studentId}/avatar. Так прогрев кэшей и статистики
+//проходит через те же события, что и в работе, а харнесс можно направить на уже запущенный сервер (--url).
+final class Dataset {
+    private static final String[] FIRST_NAMES = {"Анна", "Борис", "Гарри", "Гермиона", "Рон", "Драко", "Полумна", "Невилл"};
+    private static final int IMPORT_BATCH = 5_000;
+
+    private final long[] studentIds;
+    private final long[] facultyIds;
+    private final long[] avatarStudentIds;
+    private final byte[] avatarBody;
+
+    private Dataset(long[] studentIds, long[] facultyIds, long[] avatarStudentIds, byte[] avatarBody) {
+        this.studentIds = studentIds;
+        this.facultyIds = facultyIds;
+        this.avatarStudentIds = avatarStudentIds;
+        this.avatarBody = avatarBody;
+    }
+
+    static Dataset seed(HttpClient client, String baseUrl, ObjectMapper objectMapper, LoadTestOptions options)
+            throws IOException, InterruptedException {
+        Random random = new Random(options.seed());
+        long[] facultyIds = new long[options.faculties()];
+        for (int i = 0; i < facultyIds.length; i++) {
+            String body = "{\"name\":\"Факультет " + i + "\",\"color\":\"цвет-" + (i % 4) + "\"}";
+            HttpResponse<byte[]> response = send(client, HttpRequest.newBuilder(URI.create(baseUrl + "/faculty"))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8))
+                    .build());
+            facultyIds[i] = objectMapper.readTree(response.body()).get("id").asLong();
+        }
+
+        for (int start = 0; start < options.students(); start += IMPORT_BATCH) {
+            StringBuilder body = new StringBuilder();
+            for (int i = start; i < Math.min(start + IMPORT_BATCH, options.students()); i++) {
+                body.append("{\"name\":\"").append(FIRST_NAMES[random.nextInt(FIRST_NAMES.length)]).append(' ').append(i)
+                        .append("\",\"age\":").append(11 + random.nextInt(7))
+                        .append(",\"facultyId\":").append(facultyIds[random.nextInt(facultyIds.length)])
+                        .append("}\n");
+            }
+            send(client, HttpRequest.newBuilder(URI.create(baseUrl + "/student/import"))
+                    .header("Content-Type", "application/x-ndjson")
+                    .POST(HttpRequest.BodyPublishers.ofString(body.toString(), StandardCharsets.UTF_8))
+                    .build());
+        }
+        long[] studentIds = exportedIds(client, baseUrl + "/student/export", objectMapper);
+
+        byte[] avatarBody = randomPng(random);
+        long[] avatarStudentIds = new long[Math.min(options.avatars(), studentIds.length)];
+        for (int i = 0; i < avatarStudentIds.length; i++) {
+            avatarStudentIds[i] = studentIds[i];
+            send(client, HttpRequest.newBuilder(URI.create(baseUrl + "/avatar/" + studentIds[i] + "/avatar"))
+                    .header("Content-Type", "multipart/form-data; boundary=loadtest-boundary")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(Workload.multipart(avatarBody)))
+                    .build());
+        }
+        return new Dataset(studentIds, facultyIds, avatarStudentIds, avatarBody);
+    }
+
+    long student(Random random) {
+        return studentIds[random.nextInt(studentIds.length)];
+    }
+
+    long faculty(Random random) {
+        return facultyIds[random.nextInt(facultyIds.length)];
+    }
+
+    Long avatarStudent(Random random) {
+        return avatarStudentIds.length == 0 ? null : avatarStudentIds[random.nextInt(avatarStudentIds.length)];
+    }
+
+    byte[] avatarBody() {
+        return avatarBody;
+    }
+
+    int students() {
+        return studentIds.length;
+    }
+
+    //На сервере могут быть и студенты из прошлых прогонов - в выборку идут все, что есть
+    private static long[] exportedIds(HttpClient client, String url, ObjectMapper objectMapper)
+            throws IOException, InterruptedException {
+        HttpResponse<InputStream> response = client.send(HttpRequest.newBuilder(URI.create(url)).GET().build(),
+                HttpResponse.BodyHandlers.ofInputStream());
+        List<Long> ids = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(response.body(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    JsonNode node = objectMapper.readTree(line);
+                    ids.add(node.get("id").asLong());
+                }
+            }
+        }
+        return ids.stream().mapToLong(Long::longValue).toArray();
+    }
+
+    private static HttpResponse<byte[]> send(HttpClient client, HttpRequest request)
+            throws IOException, InterruptedException {
+        HttpResponse<byte[]> response = client.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Заполнение данных: " + request.method() + " " + request.uri()
+                    + " вернул " + response.statusCode());
+        }
+        return response;
+    }
+
+    //Настоящий PNG, чтобы миниатюры строились так же, как для загруженных пользователями аватаров
+    private static byte[] randomPng(Random random) {
+        BufferedImage image = new BufferedImage(256, 256, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, random.nextInt(0x1000000));
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try {
+            ImageIO.write(image, "png", out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
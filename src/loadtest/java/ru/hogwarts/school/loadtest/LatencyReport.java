@@ -0,0 +1,107 @@
+package ru.hogwarts.school.loadtest;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+//Сводка по ступеням интенсивности: summary.csv для сравнения прогонов и summary.txt для чтения.
+//Ступень считается насыщенной, если сервер не выдержал заданную интенсивность, p99 вышел за SLO
+//или генератор сбрасывал запросы из-за лимита одновременных.
+final class LatencyReport {
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final LoadTestOptions options;
+    private final List<OpenLoopDriver.StepResult> steps = new ArrayList<>();
+
+    LatencyReport(LoadTestOptions options) {
+        this.options = options;
+    }
+
+    boolean add(OpenLoopDriver.StepResult step) {
+        steps.add(step);
+        return isSaturated(step);
+    }
+
+    boolean isSaturated(OpenLoopDriver.StepResult step) {
+        double achieved = throughput(step.all(), step.measuredNanos());
+        long sloMicros = TimeUnit.NANOSECONDS.toMicros(options.sloP99().toNanos());
+        return step.dropped() > 0
+                || achieved < step.targetRate() * 0.95
+                || step.all().getValueAtPercentile(99) > sloMicros;
+    }
+
+    String describe(OpenLoopDriver.StepResult step) {
+        return String.format(Locale.ROOT, "%d req/s: получено %.1f req/s, p50 %.2f мс, p99 %.2f мс, max %.2f мс, "
+                        + "ошибок %d, сброшено %d%s",
+                step.targetRate(), throughput(step.all(), step.measuredNanos()),
+                millis(step.all().getValueAtPercentile(50)), millis(step.all().getValueAtPercentile(99)),
+                millis(step.all().getMaxValue()), totalErrors(step), step.dropped(),
+                isSaturated(step) ? " - НАСЫЩЕНИЕ" : "");
+    }
+
+    void write() throws IOException {
+        Path output = options.output();
+        Files.createDirectories(output);
+        try (PrintStream csv = new PrintStream(Files.newOutputStream(output.resolve("summary.csv")), false, "UTF-8")) {
+            csv.println("target_rate,endpoint,count,errors,throughput,p50_ms,p90_ms,p99_ms,p999_ms,max_ms,saturated");
+            for (OpenLoopDriver.StepResult step : steps) {
+                csvRow(csv, step, "ALL", step.all(), totalErrors(step));
+                step.histograms().forEach((name, histogram) ->
+                        csvRow(csv, step, name, histogram, step.errors().get(name)));
+            }
+        }
+        try (PrintStream text = new PrintStream(Files.newOutputStream(output.resolve("summary.txt")), false, "UTF-8")) {
+            text.printf(Locale.ROOT, "Смесь %s, студентов %d, факультетов %d, аватаров %d, прогрев %s, замер %s, SLO p99 %s%n%n",
+                    options.mix(), options.students(), options.faculties(), options.avatars(),
+                    options.warmup(), options.duration(), options.sloP99());
+            for (OpenLoopDriver.StepResult step : steps) {
+                text.println(describe(step));
+                text.printf(Locale.ROOT, "  %-36s %8s %7s %9s %9s %9s %9s %9s%n",
+                        "эндпоинт", "запросов", "ошибок", "req/s", "p50 мс", "p99 мс", "p99.9 мс", "max мс");
+                step.histograms().forEach((name, histogram) -> text.printf(Locale.ROOT,
+                        "  %-36s %8d %7d %9.1f %9.2f %9.2f %9.2f %9.2f%n",
+                        name, histogram.getTotalCount(), step.errors().get(name),
+                        throughput(histogram, step.measuredNanos()),
+                        millis(histogram.getValueAtPercentile(50)), millis(histogram.getValueAtPercentile(99)),
+                        millis(histogram.getValueAtPercentile(99.9)), millis(histogram.getMaxValue())));
+                text.println();
+            }
+            steps.stream().filter(this::isSaturated).findFirst().ifPresentOrElse(
+                    step -> text.println("Первая насыщенная ступень: " + step.targetRate() + " req/s"),
+                    () -> text.println("Насыщение не достигнуто"));
+        }
+    }
+
+    private void csvRow(PrintStream csv, OpenLoopDriver.StepResult step, String endpoint, Histogram histogram, long errors) {
+        StringBuilder row = new StringBuilder()
+                .append(step.targetRate()).append(",\"").append(endpoint).append("\",")
+                .append(histogram.getTotalCount()).append(',')
+                .append(errors).append(',')
+                .append(String.format(Locale.ROOT, "%.1f", throughput(histogram, step.measuredNanos())));
+        for (double percentile : PERCENTILES) {
+            row.append(String.format(Locale.ROOT, ",%.3f", millis(histogram.getValueAtPercentile(percentile))));
+        }
+        row.append(String.format(Locale.ROOT, ",%.3f", millis(histogram.getMaxValue())))
+                .append(',').append(isSaturated(step));
+        csv.println(row);
+    }
+
+    private static long totalErrors(OpenLoopDriver.StepResult step) {
+        return step.errors().values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    private static double throughput(Histogram histogram, long measuredNanos) {
+        return histogram.getTotalCount() / (measuredNanos / 1e9);
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+}
@@ -0,0 +1,70 @@
+package ru.hogwarts.school.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.hogwarts.school.SchoolApplication;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+//Нагрузочный прогон: поднимает приложение на H2 (профиль h2), заполняет данные и ступенчато повышает
+//интенсивность, пока сервис не перестанет её выдерживать. Запуск:
+//./mvnw -Ploadtest compile exec:exec -Dloadtest.args="rates=100,200,400 duration=PT60S"
+//С url=http://host:port нагрузка идёт на уже запущенный сервер, приложение не поднимается.
+public final class LoadTest {
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+        ConfigurableApplicationContext context = null;
+        String baseUrl = options.url();
+        if (baseUrl.isEmpty()) {
+            context = start(options);
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) context).getWebServer().getPort();
+        }
+        try {
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+            ObjectMapper objectMapper = new ObjectMapper();
+            System.out.println("Заполнение данных: " + baseUrl);
+            Dataset dataset = Dataset.seed(client, baseUrl, objectMapper, options);
+            System.out.println("Студентов в выборке: " + dataset.students());
+
+            Workload workload = new Workload(baseUrl, dataset, objectMapper, options.mix());
+            LatencyReport report = new LatencyReport(options);
+            for (int rate : options.rates()) {
+                OpenLoopDriver driver = new OpenLoopDriver(client, workload, options);
+                OpenLoopDriver.StepResult step = driver.run(rate, options.output().resolve("rate-" + rate + ".hlog"));
+                boolean saturated = report.add(step);
+                System.out.println(report.describe(step));
+                //Дальнейшие ступени только удлиняют очередь и ничего не добавляют к поиску предела
+                if (saturated) {
+                    break;
+                }
+            }
+            report.write();
+            System.out.println("Отчёт: " + options.output().toAbsolutePath());
+        } finally {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(LoadTestOptions options) {
+        return new SpringApplicationBuilder(SchoolApplication.class)
+                .web(WebApplicationType.SERVLET)
+                .run("--spring.profiles.active=h2",
+                        "--server.port=0",
+                        "--spring.threads.virtual.enabled=" + options.virtualThreads(),
+                        "--path.to.avatars.folder=" + options.output().toAbsolutePath().resolve("avatars"),
+                        "--logging.level.root=WARN");
+    }
+}
@@ -0,0 +1,66 @@
+package ru.hogwarts.school.loadtest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//Параметры прогона в виде --ключ=значение (или ключ=значение); всё, что не задано, берётся по умолчанию.
+record LoadTestOptions(String url,
+                       List<Integer> rates,
+                       Duration warmup,
+                       Duration duration,
+                       Duration reportInterval,
+                       int students,
+                       int faculties,
+                       int avatars,
+                       Workload.Mix mix,
+                       int maxInFlight,
+                       Duration sloP99,
+                       boolean virtualThreads,
+                       long seed,
+                       Path output) {
+
+    static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        //exec:exec передаёт -Dloadtest.args одной строкой, поэтому аргументы дополнительно делятся по пробелам
+        for (String arg : String.join(" ", args).trim().split("\\s+")) {
+            if (arg.isEmpty()) {
+                continue;
+            }
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int separator = option.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Ожидается ключ=значение: " + arg);
+            }
+            values.put(option.substring(0, separator), option.substring(separator + 1));
+        }
+        LoadTestOptions options = new LoadTestOptions(
+                values.getOrDefault("url", ""),
+                Arrays.stream(values.getOrDefault("rates", "50,100,200,400,800").split(","))
+                        .map(String::trim)
+                        .map(Integer::parseInt)
+                        .toList(),
+                Duration.parse(values.getOrDefault("warmup", "PT10S")),
+                Duration.parse(values.getOrDefault("duration", "PT30S")),
+                Duration.parse(values.getOrDefault("report-interval", "PT1S")),
+                Integer.parseInt(values.getOrDefault("students", "10000")),
+                Integer.parseInt(values.getOrDefault("faculties", "20")),
+                Integer.parseInt(values.getOrDefault("avatars", "200")),
+                Workload.Mix.valueOf(values.getOrDefault("mix", "mixed").toUpperCase()),
+                Integer.parseInt(values.getOrDefault("max-in-flight", "2000")),
+                Duration.parse(values.getOrDefault("slo-p99", "PT0.25S")),
+                Boolean.parseBoolean(values.getOrDefault("virtual-threads", "false")),
+                Long.parseLong(values.getOrDefault("seed", "42")),
+                Path.of(values.getOrDefault("output", "target/loadtest")));
+        if (options.rates().stream().anyMatch(rate -> rate <= 0)) {
+            throw new IllegalArgumentException("Интенсивность должна быть положительной: " + options.rates());
+        }
+        if (options.students() <= 0 || options.faculties() <= 0) {
+            throw new IllegalArgumentException("Нужен хотя бы один студент и один факультет");
+        }
+        return options;
+    }
+}
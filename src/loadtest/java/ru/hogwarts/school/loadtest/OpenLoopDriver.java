@@ -0,0 +1,166 @@
+package ru.hogwarts.school.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+//Открытая модель нагрузки: запросы отправляются по расписанию start + i * period независимо от того,
+//ответил ли сервер на предыдущие. Задержка считается от запланированного момента отправки, а не от фактического,
+//поэтому отставание генератора и очередь на сервере попадают в гистограммы (нет coordinated omission).
+final class OpenLoopDriver {
+    private final HttpClient client;
+    private final Workload workload;
+    private final LoadTestOptions options;
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+    private final Recorder allRecorder = new Recorder(3);
+    private final Histogram allTotal = new Histogram(3);
+    private final LongAdder dropped = new LongAdder();
+    private final Semaphore inFlight;
+
+    //Гистограммы одного эндпоинта: recorder пишется из потоков HttpClient, total накапливает интервалы.
+    private static final class EndpointStats {
+        private final Recorder recorder = new Recorder(3);
+        private final Histogram total = new Histogram(3);
+        private final LongAdder errors = new LongAdder();
+        private final String tag;
+
+        private EndpointStats(String name) {
+            //В логе HdrHistogram тег не должен содержать пробелов и запятых
+            this.tag = name.replace(' ', ':').replace(',', ';');
+        }
+    }
+
+    record StepResult(int targetRate, long measuredNanos, long dropped, Histogram all,
+                      Map<String, Histogram> histograms, Map<String, Long> errors) {
+    }
+
+    OpenLoopDriver(HttpClient client, Workload workload, LoadTestOptions options) {
+        this.client = client;
+        this.workload = workload;
+        this.options = options;
+        this.inFlight = new Semaphore(options.maxInFlight());
+        for (String name : workload.endpointNames()) {
+            stats.put(name, new EndpointStats(name));
+        }
+    }
+
+    StepResult run(int rate, Path logFile) throws IOException, InterruptedException {
+        long periodNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long warmupNanos = options.warmup().toNanos();
+        long measuredNanos = options.duration().toNanos();
+        Random random = new Random(options.seed() + rate);
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        Files.createDirectories(logFile.getParent());
+        try (PrintStream logStream = new PrintStream(Files.newOutputStream(logFile), false, "UTF-8")) {
+            HistogramLogWriter log = new HistogramLogWriter(logStream);
+            long startNanos = System.nanoTime();
+            long measureStartNanos = startNanos + warmupNanos;
+            long endNanos = measureStartNanos + measuredNanos;
+            long baseTimeMillis = System.currentTimeMillis() + TimeUnit.NANOSECONDS.toMillis(warmupNanos);
+            log.outputComment("Целевая интенсивность " + rate + " req/s, задержки в микросекундах");
+            log.outputLogFormatVersion();
+            log.outputStartTime(baseTimeMillis);
+            log.setBaseTime(baseTimeMillis);
+            log.outputLegend();
+
+            long intervalMillis = options.reportInterval().toMillis();
+            reporter.scheduleAtFixedRate(() -> flush(log, System.nanoTime() >= measureStartNanos),
+                    intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+
+            for (long i = 0; ; i++) {
+                long intended = startNanos + i * periodNanos;
+                if (intended >= endNanos) {
+                    break;
+                }
+                long now;
+                while ((now = System.nanoTime()) < intended) {
+                    LockSupport.parkNanos(intended - now);
+                }
+                send(workload.next(random), intended, intended >= measureStartNanos);
+            }
+            //Ждём оставшиеся ответы: их задержки тоже входят в результат
+            if (!inFlight.tryAcquire(options.maxInFlight(), 30, TimeUnit.SECONDS)) {
+                log.outputComment("Не дождались ответа на " + (options.maxInFlight() - inFlight.availablePermits())
+                        + " запросов");
+            }
+            reporter.shutdown();
+            reporter.awaitTermination(5, TimeUnit.SECONDS);
+            flush(log, true);
+        } finally {
+            reporter.shutdownNow();
+        }
+
+        Map<String, Histogram> histograms = new LinkedHashMap<>();
+        Map<String, Long> errors = new LinkedHashMap<>();
+        stats.forEach((name, endpoint) -> {
+            histograms.put(name, endpoint.total);
+            errors.put(name, endpoint.errors.sum());
+        });
+        return new StepResult(rate, measuredNanos, dropped.sum(), allTotal, histograms, errors);
+    }
+
+    //Если генератор упёрся в max-in-flight, запрос не отправляется и считается сброшенным:
+    //это уже означает, что сервер не справляется с заданной интенсивностью.
+    private void send(Workload.Call call, long intended, boolean measured) {
+        if (!inFlight.tryAcquire()) {
+            if (measured) {
+                dropped.increment();
+            }
+            return;
+        }
+        EndpointStats endpoint = stats.get(call.endpoint().name());
+        client.sendAsync(call.request(), HttpResponse.BodyHandlers.ofByteArray())
+                .whenComplete((response, error) -> {
+                    try {
+                        long latencyMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended);
+                        if (measured) {
+                            endpoint.recorder.recordValue(latencyMicros);
+                            allRecorder.recordValue(latencyMicros);
+                            if (error != null || response.statusCode() >= 400) {
+                                endpoint.errors.increment();
+                            }
+                        }
+                        if (response != null && error == null) {
+                            call.endpoint().handler().handle(response);
+                        }
+                    } catch (Exception e) {
+                        endpoint.errors.increment();
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+    }
+
+    //Интервальные гистограммы по эндпоинтам идут в лог с тегом, общая - без тега
+    private synchronized void flush(HistogramLogWriter log, boolean measured) {
+        for (EndpointStats endpoint : stats.values()) {
+            Histogram interval = endpoint.recorder.getIntervalHistogram();
+            if (measured && interval.getTotalCount() > 0) {
+                interval.setTag(endpoint.tag);
+                log.outputIntervalHistogram(interval);
+                endpoint.total.add(interval);
+            }
+        }
+        Histogram interval = allRecorder.getIntervalHistogram();
+        if (measured) {
+            log.outputIntervalHistogram(interval);
+            allTotal.add(interval);
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package ru.hogwarts.school.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+//Смесь запросов ко всем эндпоинтам StudentController, FacultyController и AvatarController.
+//У каждого эндпоинта свой вес в смеси; имя эндпоинта - шаблон пути, по нему строятся гистограммы.
+final class Workload {
+    private static final String BOUNDARY = "loadtest-boundary";
+    private static final String[] NAME_PREFIXES = {"Ан", "Бо", "Га", "Ге", "Ро", "Др", "По", "Не"};
+    private static final String[] COLORS = {"красный", "зелёный", "синий", "жёлтый"};
+
+    //READ - только чтение, MIXED - около 10% изменений, как в обычной работе приложения
+    enum Mix {
+        READ, MIXED
+    }
+
+    interface RequestFactory {
+        //null - запрос сейчас невозможен (например, нечего удалять), будет выбран другой эндпоинт
+        HttpRequest.Builder create(Random random);
+    }
+
+    interface ResponseHandler {
+        void handle(HttpResponse<byte[]> response) throws Exception;
+    }
+
+    record Endpoint(String name, int readWeight, int mixedWeight, RequestFactory factory, ResponseHandler handler) {
+        int weight(Mix mix) {
+            return mix == Mix.READ ? readWeight : mixedWeight;
+        }
+    }
+
+    record Call(Endpoint endpoint, HttpRequest request) {
+    }
+
+    private final String baseUrl;
+    private final Dataset dataset;
+    private final ObjectMapper objectMapper;
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final List<Endpoint> active = new ArrayList<>();
+    private final int[] cumulativeWeights;
+    //Студенты и факультеты, созданные нагрузкой: только их можно удалять, не ломая данные для чтения
+    private final ConcurrentLinkedQueue<Long> createdStudents = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Long> createdFaculties = new ConcurrentLinkedQueue<>();
+
+    Workload(String baseUrl, Dataset dataset, ObjectMapper objectMapper, Mix mix) {
+        this.baseUrl = baseUrl;
+        this.dataset = dataset;
+        this.objectMapper = objectMapper;
+        registerStudentEndpoints();
+        registerFacultyEndpoints();
+        registerAvatarEndpoints();
+        for (Endpoint endpoint : endpoints) {
+            if (endpoint.weight(mix) > 0) {
+                active.add(endpoint);
+            }
+        }
+        cumulativeWeights = new int[active.size()];
+        int total = 0;
+        for (int i = 0; i < active.size(); i++) {
+            total += active.get(i).weight(mix);
+            cumulativeWeights[i] = total;
+        }
+    }
+
+    List<String> endpointNames() {
+        return active.stream().map(Endpoint::name).toList();
+    }
+
+    Call next(Random random) {
+        int total = cumulativeWeights[cumulativeWeights.length - 1];
+        while (true) {
+            int point = random.nextInt(total);
+            int index = 0;
+            while (cumulativeWeights[index] <= point) {
+                index++;
+            }
+            Endpoint endpoint = active.get(index);
+            HttpRequest.Builder builder = endpoint.factory().create(random);
+            if (builder != null) {
+                return new Call(endpoint, builder.build());
+            }
+        }
+    }
+
+    private void registerStudentEndpoints() {
+        add("GET /student/{id}", 20, 18, random -> get("/student/" + dataset.student(random)));
+        add("POST /student", 0, 3, random -> post("/student", "application/json",
+                        json("{\"name\":\"%s\",\"age\":%d}", name(random), age(random))),
+                response -> rememberId(response, createdStudents));
+        //PUT без факультета в теле снимает студента с факультета, поэтому меняются только созданные нагрузкой.
+        //На время изменения id забирается из очереди, чтобы параллельный DELETE не удалил его из-под PUT.
+        add("PUT /student", 0, 3, random -> {
+            Long id = createdStudents.poll();
+            return id == null ? null : put("/student",
+                    json("{\"id\":%d,\"name\":\"%s\",\"age\":%d}", id, name(random), age(random)));
+        }, response -> rememberId(response, createdStudents));
+        add("DELETE /student/{id}", 0, 2, random -> {
+            Long id = createdStudents.poll();
+            return id == null ? null : request("/student/" + id).DELETE();
+        });
+        add("POST /student/import", 0, 1, random -> {
+            StringBuilder body = new StringBuilder();
+            for (int i = 0; i < 10; i++) {
+                body.append(json("{\"name\":\"%s\",\"age\":%d,\"facultyId\":%d}",
+                        name(random), age(random), dataset.faculty(random))).append('\n');
+            }
+            return post("/student/import", "application/x-ndjson", body.toString());
+        });
+        add("GET /student/filter", 3, 3, random -> get("/student/filter?years=" + age(random)));
+        add("GET /student/between", 3, 3, random -> {
+            int min = age(random);
+            return get("/student/between?min=" + min + "&max=" + (min + 1));
+        });
+        add("GET /student/faculty/{id}", 5, 5, random -> get("/student/faculty/" + dataset.student(random)));
+        add("GET /student/getNumber", 2, 2, random -> get("/student/getNumber"));
+        add("GET /student/getAvg", 2, 2, random -> get("/student/getAvg"));
+        add("GET /student/recent", 5, 4, random -> get("/student/recent?limit=10"));
+        add("GET /student/getLast5", 2, 2, random -> get("/student/getLast5"));
+        add("GET /student/search", 5, 5, random ->
+                get("/student/search?limit=20&prefix=" + urlEncode(NAME_PREFIXES[random.nextInt(NAME_PREFIXES.length)])));
+        add("GET /student/getWithNameOnA", 1, 1, random -> get("/student/getWithNameOnA"));
+        add("GET /student/average-age", 2, 2, random -> get("/student/average-age"));
+    }
+
+    private void registerFacultyEndpoints() {
+        add("GET /faculty/{id}", 8, 7, random -> get("/faculty/" + dataset.faculty(random)));
+        add("POST /faculty", 0, 1, random -> post("/faculty", "application/json",
+                        json("{\"name\":\"Нагрузка %d\",\"color\":\"%s\"}", random.nextInt(1_000_000),
+                                COLORS[random.nextInt(COLORS.length)])),
+                response -> rememberId(response, createdFaculties));
+        add("PUT /faculty", 0, 1, random -> {
+            Long id = createdFaculties.poll();
+            return id == null ? null : put("/faculty",
+                    json("{\"id\":%d,\"name\":\"Нагрузка %d\",\"color\":\"%s\"}", id, random.nextInt(1_000_000),
+                            COLORS[random.nextInt(COLORS.length)]));
+        }, response -> rememberId(response, createdFaculties));
+        add("DELETE /faculty/{id}", 0, 1, random -> {
+            Long id = createdFaculties.poll();
+            return id == null ? null : request("/faculty/" + id).DELETE();
+        });
+        add("GET /faculty/filter", 3, 3, random ->
+                get("/faculty/filter?color=" + urlEncode(COLORS[random.nextInt(COLORS.length)])));
+        add("GET /faculty/students/{id}", 3, 3, random -> get("/faculty/students/" + dataset.faculty(random)));
+        add("GET /faculty/max-length", 1, 1, random -> get("/faculty/max-length"));
+        add("GET /faculty/stream-iterate", 1, 1, random -> get("/faculty/stream-iterate"));
+        add("GET /faculty/{id}/stats", 3, 3, random -> get("/faculty/" + dataset.faculty(random) + "/stats"));
+        add("GET /faculty/stats", 2, 2, random -> get("/faculty/stats"));
+        add("GET /faculty/cache-stats", 1, 1, random -> get("/faculty/cache-stats"));
+    }
+
+    private void registerAvatarEndpoints() {
+        add("POST /avatar/{studentId}/avatar", 0, 2, random -> {
+            byte[] body = multipart(dataset.avatarBody());
+            return request("/avatar/" + dataset.student(random) + "/avatar")
+                    .header("Content-Type", "multipart/form-data; boundary=" + BOUNDARY)
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        });
+        add("GET /avatar/{id}/avatar-from-db", 3, 3, random ->
+                avatarGet(random, "/avatar-from-db"));
+        add("GET /avatar/{id}/avatar-from-file", 3, 3, random ->
+                avatarGet(random, "/avatar-from-file"));
+        add("GET /avatar/{id}/avatar", 4, 4, random ->
+                avatarGet(random, "/avatar?size=64"));
+        add("GET /avatar/list", 1, 1, random -> get("/avatar/list?offset=" + random.nextInt(5) + "&limit=20"));
+        add("GET /avatar/list/meta", 2, 2, random -> get("/avatar/list/meta?limit=50"));
+    }
+
+    private HttpRequest.Builder avatarGet(Random random, String suffix) {
+        Long studentId = dataset.avatarStudent(random);
+        return studentId == null ? null : get("/avatar/" + studentId + suffix);
+    }
+
+    private void add(String name, int readWeight, int mixedWeight, RequestFactory factory) {
+        add(name, readWeight, mixedWeight, factory, response -> {
+        });
+    }
+
+    private void add(String name, int readWeight, int mixedWeight, RequestFactory factory, ResponseHandler handler) {
+        endpoints.add(new Endpoint(name, readWeight, mixedWeight, factory, handler));
+    }
+
+    private void rememberId(HttpResponse<byte[]> response, ConcurrentLinkedQueue<Long> ids) throws Exception {
+        if (response.statusCode() == 200) {
+            JsonNode node = objectMapper.readTree(response.body());
+            ids.add(node.get("id").asLong());
+        }
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path));
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return request(path).GET();
+    }
+
+    private HttpRequest.Builder post(String path, String contentType, String body) {
+        return request(path)
+                .header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8));
+    }
+
+    private HttpRequest.Builder put(String path, String body) {
+        return request(path)
+                .header("Content-Type", "application/json")
+                .PUT(HttpRequest.BodyPublishers.ofString(body, StandardCharsets.UTF_8));
+    }
+
+    static byte[] multipart(byte[] content) {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(content.length + 256);
+        String header = "--" + BOUNDARY + "\r\n"
+                + "Content-Disposition: form-data; name=\"avatar\"; filename=\"avatar.png\"\r\n"
+                + "Content-Type: image/png\r\n\r\n";
+        body.writeBytes(header.getBytes(StandardCharsets.UTF_8));
+        body.writeBytes(content);
+        body.writeBytes(("\r\n--" + BOUNDARY + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        return body.toByteArray();
+    }
+
+    private static String json(String format, Object... args) {
+        return String.format(format, args);
+    }
+
+    private static String name(Random random) {
+        return NAME_PREFIXES[random.nextInt(NAME_PREFIXES.length)] + "нагрузка " + random.nextInt(1_000_000);
+    }
+
+    private static int age(Random random) {
+        return 11 + random.nextInt(7);
+    }
+
+    private static String urlEncode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+}
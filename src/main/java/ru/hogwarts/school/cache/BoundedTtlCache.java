@@ -0,0 +1,184 @@
+package ru.hogwarts.school.cache;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+//Простой кеш в памяти: ограничение по размеру (LRU), время жизни записей и счётчики попаданий/вытеснений.
+//null-значения не кешируются.
+public class BoundedTtlCache<K, V> {
+    private final String name;
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    //Увеличивается при каждой инвалидации, чтобы загруженное до неё значение не попало в кеш.
+    private long generation;
+
+    public BoundedTtlCache(String name, int maxSize, Duration ttl) {
+        this(name, maxSize, ttl, System::nanoTime);
+    }
+
+    BoundedTtlCache(String name, int maxSize, Duration ttl, LongSupplier clock) {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.clock = clock;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > BoundedTtlCache.this.maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    private record Entry<V>(V value, long expiresAt) {
+    }
+
+    public record Stats(String name, int size, long hits, long misses, long evictions, double hitRatio) {
+    }
+
+    public V get(K key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            if (entry != null && entry.expiresAt() - clock.getAsLong() <= 0) {
+                entries.remove(key);
+                evictions.increment();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return entry.value();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Значение загружается вне блокировки: при гонке два потока могут загрузить его одновременно.
+    //Если во время загрузки была инвалидация, результат возвращается, но не кешируется.
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        long loadGeneration = generation();
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        value = loader.apply(key);
+        put(key, value, loadGeneration);
+        return value;
+    }
+
+    //Поколение до начала загрузки: put(key, value, generation) не сохранит значение, если после была инвалидация.
+    public long generation() {
+        lock.lock();
+        try {
+            return generation;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(K key, V value, long loadGeneration) {
+        if (value == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (generation == loadGeneration) {
+                entries.put(key, new Entry<>(value, clock.getAsLong() + ttlNanos));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Проверка наличия без учёта в счётчиках попаданий
+    public boolean contains(K key) {
+        lock.lock();
+        try {
+            Entry<V> entry = entries.get(key);
+            return entry != null && entry.expiresAt() - clock.getAsLong() > 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        if (value == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            entries.put(key, new Entry<>(value, clock.getAsLong() + ttlNanos));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidate(K key) {
+        lock.lock();
+        try {
+            generation++;
+            entries.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateIf(Predicate<? super K> condition) {
+        lock.lock();
+        try {
+            generation++;
+            Iterator<K> keys = entries.keySet().iterator();
+            while (keys.hasNext()) {
+                if (condition.test(keys.next())) {
+                    keys.remove();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void invalidateAll() {
+        lock.lock();
+        try {
+            generation++;
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public Stats stats() {
+        long hitCount = hits.sum();
+        long missCount = misses.sum();
+        long requests = hitCount + missCount;
+        int size;
+        lock.lock();
+        try {
+            size = entries.size();
+        } finally {
+            lock.unlock();
+        }
+        return new Stats(name, size, hitCount, missCount, evictions.sum(),
+                requests == 0 ? 0 : (double) hitCount / requests);
+    }
+}
@@ -0,0 +1,127 @@
+package ru.hogwarts.school.cache;
+
+import org.hibernate.boot.spi.SessionFactoryOptions;
+import org.hibernate.cache.cfg.spi.DomainDataRegionBuildingContext;
+import org.hibernate.cache.cfg.spi.DomainDataRegionConfig;
+import org.hibernate.cache.spi.support.DomainDataStorageAccess;
+import org.hibernate.cache.spi.support.RegionFactoryTemplate;
+import org.hibernate.cache.spi.support.StorageAccess;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import ru.hogwarts.school.datasource.ReadRouting;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+//Регионы кеша второго уровня и кеша запросов Hibernate на BoundedTtlCache (локальный кеш в памяти процесса).
+//Размер и время жизни задаются для каждого региона: hibernate.cache.bounded.<регион>.max-size и .ttl,
+//по умолчанию - hibernate.cache.bounded.default.max-size и .ttl.
+//Прочитанное в транзакции на реплике в регионы сущностей и запросов не кладётся: реплика может отставать.
+public class BoundedTtlRegionFactory extends RegionFactoryTemplate {
+    static final String PREFIX = "hibernate.cache.bounded.";
+    private static final int DEFAULT_MAX_SIZE = 10_000;
+    private static final Duration DEFAULT_TTL = Duration.ofMinutes(10);
+
+    private final Map<String, BoundedTtlCache<Object, Object>> regions = new ConcurrentHashMap<>();
+    private Map<String, Object> configValues = Map.of();
+
+    @Override
+    protected void prepareForUse(SessionFactoryOptions settings, Map<String, Object> configValues) {
+        this.configValues = new HashMap<>(configValues);
+    }
+
+    @Override
+    protected void releaseFromUse() {
+        regions.values().forEach(BoundedTtlCache::invalidateAll);
+        regions.clear();
+    }
+
+    @Override
+    protected DomainDataStorageAccess createDomainDataStorageAccess(DomainDataRegionConfig regionConfig,
+                                                                    DomainDataRegionBuildingContext buildingContext) {
+        return storage(regionConfig.getRegionName(), maxSize(regionConfig.getRegionName()),
+                ttl(regionConfig.getRegionName()), true);
+    }
+
+    @Override
+    protected StorageAccess createQueryResultsRegionStorageAccess(String regionName,
+                                                                  SessionFactoryImplementor sessionFactory) {
+        return storage(regionName, maxSize(regionName), ttl(regionName), true);
+    }
+
+    //Отметки времени изменения таблиц не вытесняются: при отсутствии отметки Hibernate считает
+    //результат запроса из кеша актуальным. Записей здесь по одной на таблицу.
+    @Override
+    protected StorageAccess createTimestampsRegionStorageAccess(String regionName,
+                                                                SessionFactoryImplementor sessionFactory) {
+        return storage(regionName, Integer.MAX_VALUE, Duration.ofDays(3650), false);
+    }
+
+    public List<BoundedTtlCache.Stats> getRegionStats() {
+        return regions.values().stream()
+                .map(BoundedTtlCache::stats)
+                .sorted(Comparator.comparing(BoundedTtlCache.Stats::name))
+                .toList();
+    }
+
+    private Storage storage(String regionName, int maxSize, Duration ttl, boolean skipReplicaReads) {
+        BoundedTtlCache<Object, Object> cache = new BoundedTtlCache<>(regionName, maxSize, ttl);
+        regions.put(regionName, cache);
+        return new Storage(cache, skipReplicaReads);
+    }
+
+    private int maxSize(String regionName) {
+        Object value = setting(regionName, "max-size");
+        return value != null ? Integer.parseInt(value.toString().strip()) : DEFAULT_MAX_SIZE;
+    }
+
+    private Duration ttl(String regionName) {
+        Object value = setting(regionName, "ttl");
+        return value != null ? Duration.parse(value.toString().strip()) : DEFAULT_TTL;
+    }
+
+    private Object setting(String regionName, String name) {
+        Object value = configValues.get(PREFIX + regionName + "." + name);
+        return value != null ? value : configValues.get(PREFIX + "default." + name);
+    }
+
+    private record Storage(BoundedTtlCache<Object, Object> cache, boolean skipReplicaReads)
+            implements DomainDataStorageAccess {
+        @Override
+        public Object getFromCache(Object key, SharedSessionContractImplementor session) {
+            return cache.get(key);
+        }
+
+        @Override
+        public void putIntoCache(Object key, Object value, SharedSessionContractImplementor session) {
+            if (skipReplicaReads && ReadRouting.isReplicaTransaction()) {
+                return;
+            }
+            cache.put(key, value);
+        }
+
+        @Override
+        public boolean contains(Object key) {
+            return cache.contains(key);
+        }
+
+        @Override
+        public void evictData() {
+            cache.invalidateAll();
+        }
+
+        @Override
+        public void evictData(Object key) {
+            cache.invalidate(key);
+        }
+
+        @Override
+        public void release() {
+            cache.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package ru.hogwarts.school.cache;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.event.StudentChangedEvent;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+//Кеш готовых ответов GET: сериализованное тело и заранее сжатые варианты gzip и deflate,
+//так что ни Jackson, ни сжатие при попадании не выполняются.
+//Записи группы сбрасываются после коммита изменений студентов или факультетов.
+@Component
+public class ResponseCache {
+    private final BoundedTtlCache<Key, CachedResponse> cache;
+    private final int minCompressSize;
+
+    public ResponseCache(@Value("${response.cache.max-size:1000}") int maxSize,
+                         @Value("${response.cache.ttl:PT10M}") Duration ttl,
+                         @Value("${response.cache.min-compress-size:256}") int minCompressSize) {
+        this.cache = new BoundedTtlCache<>("response", maxSize, ttl);
+        this.minCompressSize = minCompressSize;
+    }
+
+    //От каких данных зависит ответ
+    public enum Group {
+        STUDENTS, FACULTIES
+    }
+
+    //query - параметры запроса в порядке имён, чтобы ?a=1&b=2 и ?b=2&a=1 давали одну запись
+    public record Key(Group group, String path, String query) {
+    }
+
+    //gzip и deflate равны null для маленьких ответов: сжатие их не уменьшает.
+    //pattern - шаблон пути для метрик, при попадании контроллер не вызывается.
+    public record CachedResponse(String contentType, String pattern, byte[] body, byte[] gzip, byte[] deflate) {
+    }
+
+    public CachedResponse get(Key key) {
+        return cache.get(key);
+    }
+
+    public long generation() {
+        return cache.generation();
+    }
+
+    //Сжимает тело один раз и сохраняет, если после generation не было инвалидации.
+    public CachedResponse put(Key key, String contentType, String pattern, byte[] body, long generation) {
+        boolean compress = body.length >= minCompressSize;
+        CachedResponse response = new CachedResponse(contentType, pattern, body,
+                compress ? gzip(body) : null,
+                compress ? deflate(body) : null);
+        cache.put(key, response, generation);
+        return response;
+    }
+
+    public BoundedTtlCache.Stats stats() {
+        return cache.stats();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        invalidate(Group.STUDENTS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onFacultyChanged(FacultyChangedEvent event) {
+        invalidate(Group.FACULTIES);
+    }
+
+    //Для данных, которые меняются не только по событиям (например, исправленных сверкой)
+    public void invalidate(Group group) {
+        cache.invalidateIf(key -> key.group() == group);
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 2);
+        try (OutputStream os = new GZIPOutputStream(bytes)) {
+            os.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static byte[] deflate(byte[] body) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 2);
+        try (OutputStream os = new DeflaterOutputStream(bytes)) {
+            os.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
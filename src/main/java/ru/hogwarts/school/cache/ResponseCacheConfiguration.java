@@ -0,0 +1,28 @@
+package ru.hogwarts.school.cache;
+
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.util.Map;
+
+//Пути, ответы которых кешируются целиком, и данные, от которых они зависят.
+//Фильтр стоит после фильтра метрик, чтобы попадания в кеш тоже попадали в http.server.requests.
+@Configuration
+public class ResponseCacheConfiguration {
+
+    @Bean
+    public FilterRegistrationBean<ResponseCacheFilter> responseCacheFilter(ResponseCache responseCache) {
+        Map<String, ResponseCache.Group> paths = Map.of(
+                "/faculty/filter", ResponseCache.Group.FACULTIES,
+                "/faculty/max-length", ResponseCache.Group.FACULTIES,
+                "/student/getNumber", ResponseCache.Group.STUDENTS,
+                "/student/getAvg", ResponseCache.Group.STUDENTS,
+                "/student/average-age", ResponseCache.Group.STUDENTS);
+        FilterRegistrationBean<ResponseCacheFilter> registration =
+                new FilterRegistrationBean<>(new ResponseCacheFilter(responseCache, paths));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 10);
+        return registration;
+    }
+}
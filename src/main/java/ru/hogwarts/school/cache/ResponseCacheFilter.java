@@ -0,0 +1,126 @@
+package ru.hogwarts.school.cache;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+import ru.hogwarts.school.datasource.ReadRouting;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+//Отдаёт GET-ответы выбранных путей из ResponseCache. При промахе ответ контроллера перехватывается,
+//сохраняется вместе со сжатыми вариантами, и клиенту уходит вариант по Accept-Encoding.
+//Запрос, ответ которого попадёт в кеш, читает основную базу, а не отстающую реплику.
+public class ResponseCacheFilter extends OncePerRequestFilter {
+    private final ResponseCache cache;
+    private final Map<String, ResponseCache.Group> paths;
+
+    public ResponseCacheFilter(ResponseCache cache, Map<String, ResponseCache.Group> paths) {
+        this.cache = cache;
+        this.paths = paths;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod()) || !paths.containsKey(path(request));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String path = path(request);
+        ResponseCache.Key key = new ResponseCache.Key(paths.get(path), path, query(request));
+        ResponseCache.CachedResponse cached = cache.get(key);
+        if (cached != null) {
+            request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, cached.pattern());
+            write(cached, request, response);
+            return;
+        }
+        long generation = cache.generation();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        try (ReadRouting.Scope ignored = ReadRouting.primaryReads()) {
+            filterChain.doFilter(request, wrapper);
+        }
+        if (wrapper.getStatus() != HttpServletResponse.SC_OK || request.isAsyncStarted()) {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        write(cache.put(key, wrapper.getContentType(), pattern != null ? pattern.toString() : path,
+                wrapper.getContentAsByteArray(), generation), request, response);
+    }
+
+    private static void write(ResponseCache.CachedResponse cached, HttpServletRequest request,
+                              HttpServletResponse response) throws IOException {
+        String encoding = negotiate(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        byte[] body = cached.body();
+        if ("gzip".equals(encoding) && cached.gzip() != null) {
+            body = cached.gzip();
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+        } else if ("deflate".equals(encoding) && cached.deflate() != null) {
+            body = cached.deflate();
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(cached.contentType());
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+    }
+
+    //Выбор сжатия по Accept-Encoding с учётом q; при равном весе предпочитаем gzip.
+    static String negotiate(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        double gzip = -1;
+        double deflate = -1;
+        double any = -1;
+        for (String part : acceptEncoding.split(",")) {
+            String[] tokens = part.split(";");
+            String coding = tokens[0].strip().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < tokens.length; i++) {
+                String parameter = tokens[i].strip();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            switch (coding) {
+                case "gzip", "x-gzip" -> gzip = q;
+                case "deflate" -> deflate = q;
+                case "*" -> any = q;
+                default -> {
+                }
+            }
+        }
+        gzip = gzip >= 0 ? gzip : Math.max(any, 0);
+        deflate = deflate >= 0 ? deflate : Math.max(any, 0);
+        if (gzip > 0 && gzip >= deflate) {
+            return "gzip";
+        }
+        return deflate > 0 ? "deflate" : null;
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static String query(HttpServletRequest request) {
+        return new TreeMap<>(request.getParameterMap()).entrySet().stream()
+                .map(entry -> entry.getKey() + "=" + String.join(",", entry.getValue()))
+                .collect(Collectors.joining("&"));
+    }
+}
@@ -0,0 +1,93 @@
+package ru.hogwarts.school.cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+
+//Кольцевой буфер последних добавленных элементов без блокировок: запись - getAndIncrement и set в ячейку,
+//чтение - проход по ячейкам. Удалённый элемент заменяется на null (tombstone), при переполнении
+//старые элементы перезаписываются новыми.
+public class RingBuffer<T> {
+    private final AtomicReferenceArray<T> slots;
+    private final AtomicLong head = new AtomicLong();
+    private final AtomicLong tombstones = new AtomicLong();
+    private final Consumer<? super T> onEvict;
+
+    public RingBuffer(int capacity) {
+        this(capacity, value -> {
+        });
+    }
+
+    //onEvict получает перезаписываемый элемент до того, как он пропадёт из буфера:
+    //snapshot без этого элемента начнётся уже после вызова onEvict.
+    public RingBuffer(int capacity, Consumer<? super T> onEvict) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Ёмкость буфера должна быть положительной: " + capacity);
+        }
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.onEvict = onEvict;
+    }
+
+    public void add(T value) {
+        long sequence = head.getAndIncrement();
+        int index = (int) (sequence % slots.length());
+        T previous = slots.get(index);
+        if (previous != null) {
+            onEvict.accept(previous);
+        }
+        T overwritten = slots.getAndSet(index, value);
+        //ячейку успели заменить через replaceIf
+        if (overwritten != null && overwritten != previous) {
+            onEvict.accept(overwritten);
+        }
+    }
+
+    //Заменяет подходящие элементы; если replacement вернул null, элемент удаляется.
+    //Возвращает число заменённых элементов.
+    public int replaceIf(Predicate<T> filter, UnaryOperator<T> replacement) {
+        int replaced = 0;
+        for (int i = 0; i < slots.length(); i++) {
+            T current = slots.get(i);
+            while (current != null && filter.test(current)) {
+                T updated = replacement.apply(current);
+                if (slots.compareAndSet(i, current, updated)) {
+                    if (updated == null) {
+                        tombstones.incrementAndGet();
+                    }
+                    replaced++;
+                    break;
+                }
+                current = slots.get(i);
+            }
+        }
+        return replaced;
+    }
+
+    //Элементы от новых к старым.
+    public List<T> snapshot() {
+        long end = head.get();
+        int length = slots.length();
+        long start = Math.max(0, end - length);
+        List<T> result = new ArrayList<>((int) (end - start));
+        for (long sequence = end - 1; sequence >= start; sequence--) {
+            T value = slots.get((int) (sequence % length));
+            if (value != null) {
+                result.add(value);
+            }
+        }
+        return result;
+    }
+
+    //true, пока буфер хранит всё, что в него добавляли: не было ни перезаписи, ни удалений.
+    public boolean isComplete() {
+        return head.get() <= slots.length() && tombstones.get() == 0;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,93 @@
+package ru.hogwarts.school.cache;
+
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+//Объединение одинаковых одновременных загрузок: первый поток по ключу (ведущий) выполняет загрузку,
+//остальные ждут её результата не дольше timeout и получают тот же объект или ту же ошибку.
+//Результат не хранится: после завершения загрузки следующий вызов снова идёт в БД.
+//Ждущие потоки не держат соединение с БД, поэтому наплыв запросов после промаха кеша не исчерпывает пул.
+public class SingleFlight<K, V> {
+    private final String name;
+    private final Duration timeout;
+    private final ConcurrentHashMap<K, CompletableFuture<V>> flights = new ConcurrentHashMap<>();
+    private final LongAdder leaders = new LongAdder();
+    private final LongAdder followers = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    public SingleFlight(String name, Duration timeout) {
+        this.name = name;
+        this.timeout = timeout;
+    }
+
+    //collapseRatio - доля вызовов, которые не пошли в БД, а дождались чужой загрузки
+    public record Stats(String name, int inFlight, long leaders, long followers, long timeouts, double collapseRatio) {
+    }
+
+    public V execute(K key, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = flights.putIfAbsent(key, flight);
+        if (existing != null) {
+            followers.increment();
+            return await(key, existing);
+        }
+        leaders.increment();
+        try {
+            V value = loader.apply(key);
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    private V await(K key, CompletableFuture<V> flight) {
+        try {
+            return flight.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            timeouts.increment();
+            throw new QueryTimeoutException("Загрузка " + name + " по ключу " + key + " не завершилась за " + timeout);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new QueryTimeoutException("Ожидание загрузки " + name + " по ключу " + key + " прервано");
+        }
+    }
+
+    //После изменения данных новые вызовы должны начать свою загрузку, а не присоединиться к начатой до изменения.
+    //Уже ждущие получат результат текущей загрузки - они пришли раньше изменения.
+    public void forget(K key) {
+        flights.remove(key);
+    }
+
+    public void forgetIf(Predicate<? super K> condition) {
+        flights.keySet().removeIf(condition);
+    }
+
+    public Stats stats() {
+        long leaderCount = leaders.sum();
+        long followerCount = followers.sum();
+        long calls = leaderCount + followerCount;
+        return new Stats(name, flights.size(), leaderCount, followerCount, timeouts.sum(),
+                calls == 0 ? 0 : (double) followerCount / calls);
+    }
+}
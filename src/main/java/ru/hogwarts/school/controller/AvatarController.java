@@ -1,5 +1,6 @@
 package ru.hogwarts.school.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
@@ -10,53 +11,100 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.dto.AvatarMetadata;
+import ru.hogwarts.school.dto.BatchResult;
+import ru.hogwarts.school.dto.CursorPage;
 import ru.hogwarts.school.model.Avatar;
 import ru.hogwarts.school.service.AvatarService;
+import ru.hogwarts.school.service.BatchLookup;
+import ru.hogwarts.school.service.AvatarThumbnailService;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.util.List;
 
 @RestController
 @RequestMapping("avatar")
 public class AvatarController {
     private final AvatarService avatarService;
-    public AvatarController(AvatarService avatarService){
+    private final AvatarFileSender avatarFileSender;
+    private final BatchLookup batchLookup;
+    public AvatarController(AvatarService avatarService, AvatarFileSender avatarFileSender, BatchLookup batchLookup){
         this.avatarService = avatarService;
+        this.avatarFileSender = avatarFileSender;
+        this.batchLookup = batchLookup;
     }
     //Запись данных на лок.диск и БД:
     @PostMapping(value = "/{studentId}/avatar", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<String> uploadAvatar(@PathVariable Long studentId, @RequestParam MultipartFile avatar) throws IOException{
-        avatarService.uploadAvatar(studentId, avatar);
-        return ResponseEntity.ok().build();
+        return switch (avatarService.uploadAvatar(studentId, avatar)) {
+            case STUDENT_NOT_FOUND -> ResponseEntity.notFound().build();
+            case UNSUPPORTED_MEDIA_TYPE -> ResponseEntity.status(HttpStatus.UNSUPPORTED_MEDIA_TYPE).build();
+            case UPLOADED -> ResponseEntity.ok().build();
+        };
     }
-    //Чтение файлов из БД:
+    //Чтение данных аватара (старые записи - из БД, новые - из контентного хранилища):
     @GetMapping(value = "/{id}/avatar-from-db")
-    public ResponseEntity<byte[]>downloadAvatar(@PathVariable Long id){
+    public ResponseEntity<byte[]>downloadAvatar(@PathVariable Long id) throws IOException {
         Avatar avatar = avatarService.findAvatar(id);
+        byte[] data = avatarService.getAvatarData(avatar);
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.parseMediaType(avatar.getMediaType()));
-        headers.setContentLength(avatar.getData().length);
-        return ResponseEntity.status(HttpStatus.OK).headers(headers).body(avatar.getData());
+        //старые записи хранят тип, присланный клиентом
+        headers.set(AvatarFileSender.CONTENT_TYPE_OPTIONS, "nosniff");
+        headers.setContentLength(data.length);
+        return ResponseEntity.status(HttpStatus.OK).headers(headers).body(data);
     }
 
-    //Чтение с локального диска:
+    //Чтение с локального диска (Range, ETag, 304):
     @GetMapping(value = "/{id}/avatar-from-file")
-    public void downloadAvatar(@PathVariable Long id, HttpServletResponse response) throws IOException{
+    public void downloadAvatar(@PathVariable Long id, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException{
         Avatar avatar = avatarService.findAvatar(id);
-        Path path = Path.of(avatar.getFilePath());
-        try(InputStream is = Files.newInputStream(path);
-            OutputStream os = response.getOutputStream();) {
-            response.setStatus(200);
-            response.setContentType(avatar.getMediaType());
-            response.setContentLength((int)avatar.getFileSize());
-            is.transferTo(os);
+        if (avatar.getId() == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
+        avatarFileSender.send(request, response, avatarService.getAvatarFile(avatar),
+                avatar.getMediaType(), avatar.getContentHash());
     }
+    //Миниатюры для списков: size - один из настроенных размеров (по умолчанию 64, 128, 256).
+    @GetMapping(value = "/{id}/avatar")
+    public void downloadThumbnail(@PathVariable Long id, @RequestParam int size, HttpServletRequest request,
+                                  HttpServletResponse response) throws IOException {
+        if (!avatarService.isSupportedThumbnailSize(size)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST);
+            return;
+        }
+        Avatar avatar = avatarService.findAvatar(id);
+        if (avatar.getId() == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        AvatarThumbnailService.Thumbnail thumbnail = avatarService.getThumbnail(avatar, size);
+        String etag = avatar.getContentHash() != null
+                ? avatar.getContentHash() + "-" + thumbnail.file().getFileName()
+                : null;
+        avatarFileSender.send(request, response, thumbnail.file(), thumbnail.mediaType(), etag);
+    }
+
     @GetMapping("/list")
     public Page<Avatar> findAll(@RequestParam("offset") Integer offset, @RequestParam("limit") Integer limit) {
         return avatarService.findAll(offset, limit);
     }
+
+    //Лёгкий список: только метаданные и ссылка на файл, пагинация по курсору after (id аватара).
+    @GetMapping("/list/meta")
+    public CursorPage<AvatarMetadata> findMetadata(@RequestParam(defaultValue = "0") long after,
+                                                   @RequestParam(defaultValue = "50") int limit) {
+        return avatarService.findMetadata(after, limit);
+    }
+
+    //Метаданные аватаров нескольких студентов: /avatar/meta?studentIds=1,2,3; missing - студенты без аватара
+    @GetMapping("/meta")
+    public ResponseEntity<BatchResult<AvatarMetadata>> findMetadataByStudentIds(@RequestParam List<Long> studentIds) {
+        if (!batchLookup.accepts(studentIds)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(avatarService.findMetadataByStudentIds(studentIds));
+    }
 }
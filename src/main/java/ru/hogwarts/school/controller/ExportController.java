@@ -0,0 +1,87 @@
+package ru.hogwarts.school.controller;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import ru.hogwarts.school.service.ExportService;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+//Потоковая выгрузка студентов и факультетов в NDJSON или CSV, по желанию со сжатием gzip.
+//Выгрузка может идти дольше стандартного таймаута асинхронного запроса, поэтому свой таймаут задаётся только ей.
+@RestController
+public class ExportController {
+    private final ExportService exportService;
+    private final Duration timeout;
+
+    public ExportController(ExportService exportService, @Value("${export.timeout:PT30M}") Duration timeout) {
+        this.exportService = exportService;
+        this.timeout = timeout;
+    }
+
+    private interface Export {
+        void write(OutputStream out, ExportService.Format format) throws IOException;
+    }
+
+    @GetMapping("/student/export")
+    public ResponseEntity<StreamingResponseBody> exportStudents(@RequestParam(defaultValue = "ndjson") String format,
+                                                                @RequestParam(defaultValue = "false") boolean gzip,
+                                                                NativeWebRequest request) {
+        return export(request, "students", format, gzip, exportService::exportStudents);
+    }
+
+    @GetMapping("/faculty/export")
+    public ResponseEntity<StreamingResponseBody> exportFaculties(@RequestParam(defaultValue = "ndjson") String format,
+                                                                 @RequestParam(defaultValue = "false") boolean gzip,
+                                                                 NativeWebRequest request) {
+        return export(request, "faculties", format, gzip, exportService::exportFaculties);
+    }
+
+    private ResponseEntity<StreamingResponseBody> export(NativeWebRequest request, String name, String format,
+                                                         boolean gzip, Export export) {
+        ExportService.Format exportFormat;
+        try {
+            exportFormat = ExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        boolean csv = exportFormat == ExportService.Format.CSV;
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(csv
+                ? new MediaType("text", "csv", StandardCharsets.UTF_8)
+                : MediaType.APPLICATION_NDJSON);
+        headers.setContentDisposition(ContentDisposition.attachment()
+                .filename(name + (csv ? ".csv" : ".ndjson"))
+                .build());
+        if (gzip) {
+            headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        StreamingResponseBody body = out -> {
+            if (gzip) {
+                GZIPOutputStream compressed = new GZIPOutputStream(out, 64 * 1024);
+                export.write(compressed, exportFormat);
+                compressed.finish();
+            } else {
+                export.write(out, exportFormat);
+            }
+        };
+        //Запрос ещё не перешёл в асинхронный режим: таймаут применится при его запуске
+        if (request instanceof AsyncWebRequest asyncRequest) {
+            asyncRequest.setTimeout(timeout.toMillis());
+        }
+        return ResponseEntity.ok().headers(headers).body(body);
+    }
+}
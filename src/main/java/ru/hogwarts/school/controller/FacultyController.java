@@ -1,29 +1,62 @@
 package ru.hogwarts.school.controller;
 
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.hogwarts.school.cache.BoundedTtlCache;
+import ru.hogwarts.school.dto.BatchResult;
+import ru.hogwarts.school.dto.EntityVersion;
+import ru.hogwarts.school.dto.FacultyStatistics;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.service.BatchLookup;
 import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.FacultyStatisticsService;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("faculty")
 public class FacultyController {
     private final FacultyService facultyService;
+    private final FacultyStatisticsService facultyStatisticsService;
+    private final BatchLookup batchLookup;
 
-    public FacultyController(FacultyService facultyService) {
+    public FacultyController(FacultyService facultyService, FacultyStatisticsService facultyStatisticsService,
+                             BatchLookup batchLookup) {
         this.facultyService = facultyService;
+        this.facultyStatisticsService = facultyStatisticsService;
+        this.batchLookup = batchLookup;
     }
 
+    //Несколько факультетов за один запрос: /faculty?ids=1,2,3; ненайденные id - в поле missing
+    @GetMapping(params = "ids")
+    public ResponseEntity<BatchResult<Faculty>> getFaculties(@RequestParam List<Long> ids) {
+        if (!batchLookup.accepts(ids)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(facultyService.getFaculties(ids));
+    }
+
+    //Повторная проверка клиентом (If-None-Match) сверяет только версию
     @GetMapping("{id}")
-    public ResponseEntity<Faculty> getFacultyInfo(@PathVariable Long id) {
+    public ResponseEntity<Faculty> getFacultyInfo(@PathVariable Long id,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            Optional<EntityVersion> version = facultyService.getFacultyVersion(id);
+            if (version.isPresent() && version.get().matchesIfNoneMatch(ifNoneMatch)) {
+                return withVersion(ResponseEntity.status(HttpStatus.NOT_MODIFIED), version.get()).build();
+            }
+        }
         Faculty faculty = facultyService.getFaculty(id);
         if (faculty == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(faculty);
+        return withVersion(ResponseEntity.ok(), versionOf(faculty)).body(faculty);
     }
 
     @PostMapping
@@ -32,13 +65,22 @@ public class FacultyController {
         return facultyService.addFaculty(faculty);
     }
 
+    //If-Match: изменение только если факультет не менялся с момента чтения, иначе 412
     @PutMapping
-    public ResponseEntity<Faculty> editFaculty(@RequestBody Faculty faculty) {
-        Faculty foundFaculty = facultyService.editFaculty(faculty);
+    public ResponseEntity<Faculty> editFaculty(@RequestBody Faculty faculty,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Faculty foundFaculty;
+        try {
+            foundFaculty = ifMatch == null
+                    ? facultyService.editFaculty(faculty)
+                    : facultyService.editFaculty(faculty, EntityVersion.fromIfMatch(ifMatch));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
         if (foundFaculty == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(foundFaculty);
+        return withVersion(ResponseEntity.ok(), versionOf(foundFaculty)).body(foundFaculty);
     }
 
     @DeleteMapping("{id}")
@@ -68,4 +110,31 @@ public class FacultyController {
     public Integer streamIterate() {
         return facultyService.streamIterate();
     }
+
+    @GetMapping("/{id}/stats")
+    public ResponseEntity<FacultyStatistics> getFacultyStatistics(@PathVariable long id) {
+        return ResponseEntity.of(facultyStatisticsService.getStatistics(id));
+    }
+
+    @GetMapping("/stats")
+    public List<FacultyStatistics> getAllFacultyStatistics() {
+        return facultyStatisticsService.getAllStatistics();
+    }
+
+    @GetMapping("/cache-stats")
+    public List<BoundedTtlCache.Stats> getCacheStats() {
+        return facultyService.getCacheStats();
+    }
+
+    private static EntityVersion versionOf(Faculty faculty) {
+        return new EntityVersion(faculty.getVersion(), faculty.getLastModified());
+    }
+
+    private static ResponseEntity.BodyBuilder withVersion(ResponseEntity.BodyBuilder builder, EntityVersion version) {
+        builder.eTag(version.eTag());
+        if (version.lastModified() != null) {
+            builder.lastModified(version.lastModified());
+        }
+        return builder;
+    }
 }
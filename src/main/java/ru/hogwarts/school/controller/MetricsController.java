@@ -0,0 +1,28 @@
+package ru.hogwarts.school.controller;
+
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.hogwarts.school.metrics.MetricsRegistry;
+import ru.hogwarts.school.metrics.PrometheusFormat;
+
+@RestController
+@RequestMapping("actuator")
+public class MetricsController {
+    private final MetricsRegistry metricsRegistry;
+
+    public MetricsController(MetricsRegistry metricsRegistry) {
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @GetMapping("/metrics")
+    public MetricsRegistry.MetricsSnapshot getMetrics() {
+        return metricsRegistry.snapshot();
+    }
+
+    @GetMapping(value = "/prometheus", produces = PrometheusFormat.CONTENT_TYPE)
+    public ResponseEntity<String> getPrometheus() {
+        return ResponseEntity.ok(PrometheusFormat.write(metricsRegistry.snapshot()));
+    }
+}
@@ -1,14 +1,28 @@
 package ru.hogwarts.school.controller;
 
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import ru.hogwarts.school.dto.BatchResult;
+import ru.hogwarts.school.dto.EntityVersion;
+import ru.hogwarts.school.dto.ImportReport;
+import ru.hogwarts.school.dto.RecentStudent;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repositories.StudentByName;
+import ru.hogwarts.school.repositories.StudentSearchRow;
+import ru.hogwarts.school.service.BatchLookup;
+import ru.hogwarts.school.service.RecentStudentsService;
+import ru.hogwarts.school.service.StudentImportService;
 import ru.hogwarts.school.service.StudentService;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
@@ -18,17 +32,41 @@ import java.util.Optional;
 @RequestMapping("/student")
 public class StudentController {
     private final StudentService studentService;
-    public StudentController(StudentService studentService) {
+    private final StudentImportService studentImportService;
+    private final RecentStudentsService recentStudentsService;
+    private final BatchLookup batchLookup;
+    public StudentController(StudentService studentService, StudentImportService studentImportService,
+                             RecentStudentsService recentStudentsService, BatchLookup batchLookup) {
         this.studentService = studentService;
+        this.studentImportService = studentImportService;
+        this.recentStudentsService = recentStudentsService;
+        this.batchLookup = batchLookup;
     }
 
+    //Несколько студентов за один запрос: /student?ids=1,2,3; ненайденные id - в поле missing
+    @GetMapping(params = "ids")
+    public ResponseEntity<BatchResult<Student>> getStudents(@RequestParam List<Long> ids) {
+        if (!batchLookup.accepts(ids)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(studentService.getStudents(ids));
+    }
+
+    //Повторная проверка клиентом (If-None-Match) сверяет только версию, сущность не загружается
     @GetMapping("{id}")
-    public ResponseEntity<Student> getStudentInfo(@PathVariable Long id) {
+    public ResponseEntity<Student> getStudentInfo(@PathVariable Long id,
+                                                  @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch != null) {
+            Optional<EntityVersion> version = studentService.getStudentVersion(id);
+            if (version.isPresent() && version.get().matchesIfNoneMatch(ifNoneMatch)) {
+                return withVersion(ResponseEntity.status(HttpStatus.NOT_MODIFIED), version.get()).build();
+            }
+        }
         Student student = studentService.getStudent(id);
         if (student == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(student);
+        return withVersion(ResponseEntity.ok(), versionOf(student)).body(student);
     }
 
     @PostMapping
@@ -37,13 +75,32 @@ public class StudentController {
         return studentService.addStudent(student);
     }
 
+    //Массовая загрузка: NDJSON (по объекту на строку) или CSV name,age,facultyId
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "text/csv"})
+    public ImportReport importStudents(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                       HttpServletRequest request) throws IOException {
+        StudentImportService.Format format = contentType.isCompatibleWith(MediaType.parseMediaType("text/csv"))
+                ? StudentImportService.Format.CSV
+                : StudentImportService.Format.NDJSON;
+        return studentImportService.importStudents(request.getInputStream(), format);
+    }
+
+    //If-Match: изменение только если студент не менялся с момента чтения, иначе 412
     @PutMapping
-    public ResponseEntity<Student> editStudent(@RequestBody Student student) {
-        Student foundStudent = studentService.editStudent(student);
+    public ResponseEntity<Student> editStudent(@RequestBody Student student,
+                                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        Student foundStudent;
+        try {
+            foundStudent = ifMatch == null
+                    ? studentService.editStudent(student)
+                    : studentService.editStudent(student, EntityVersion.fromIfMatch(ifMatch));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.PRECONDITION_FAILED).build();
+        }
         if (foundStudent == null) {
             return ResponseEntity.notFound().build();
         }
-        return ResponseEntity.ok(foundStudent);
+        return withVersion(ResponseEntity.ok(), versionOf(foundStudent)).body(foundStudent);
     }
 
     @DeleteMapping("{id}")
@@ -75,11 +132,29 @@ public class StudentController {
         return studentService.getAvgOfStudents();
     }
 
+    //Лента последних студентов для опроса: since - id самого нового уже полученного студента
+    @GetMapping("/recent")
+    public List<RecentStudent> getRecentStudents(@RequestParam(defaultValue = "5") int limit,
+                                                 @RequestParam(required = false) Long since) {
+        return recentStudentsService.getRecent(limit, since);
+    }
+
     @GetMapping("/getLast5")
     public Collection<StudentByName> getStudentsByName() {
         return studentService.getStudentByName();
     }
 
+    //Поиск по имени: /student/search?prefix=гар&limit=20 или ?contains=рри
+    @GetMapping("/search")
+    public ResponseEntity<List<StudentSearchRow>> searchStudents(@RequestParam(required = false) String prefix,
+                                                                 @RequestParam(required = false) String contains,
+                                                                 @RequestParam(defaultValue = "20") int limit) {
+        if ((prefix == null || prefix.isBlank()) && (contains == null || contains.isBlank())) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(studentService.searchByName(prefix, contains, limit));
+    }
+
     @GetMapping("/getWithNameOnA")
     public Collection<String> getWithNameOnA() {
         return studentService.getWithNameOnA();
@@ -89,5 +164,16 @@ public class StudentController {
     public Double getAVGAge() {
         return studentService.getAVGAge();
     }
-}
 
+    private static EntityVersion versionOf(Student student) {
+        return new EntityVersion(student.getVersion(), student.getLastModified());
+    }
+
+    private static ResponseEntity.BodyBuilder withVersion(ResponseEntity.BodyBuilder builder, EntityVersion version) {
+        builder.eTag(version.eTag());
+        if (version.lastModified() != null) {
+            builder.lastModified(version.lastModified());
+        }
+        return builder;
+    }
+}
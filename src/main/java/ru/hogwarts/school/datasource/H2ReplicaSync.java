@@ -0,0 +1,113 @@
+package ru.hogwarts.school.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+//Реплика для локального профиля h2-replica: отдельная база H2 в памяти, в которую периодически
+//копируются данные основной. Таблицы основной базы подключены к реплике как связанные (CREATE LINKED TABLE),
+//копирование всех таблиц идёт одной транзакцией, поэтому читатели видят либо старый, либо новый снимок.
+//Время копирования записывается в replica_sync: по нему lag-query считает отставание.
+public class H2ReplicaSync {
+    private static final String LINK_PREFIX = "primary_";
+
+    private final DataSource primary;
+    private final DataSource replica;
+    private final String primaryUrl;
+    private final String username;
+    private final String password;
+    private boolean schemaCreated;
+    Logger logger = LoggerFactory.getLogger(H2ReplicaSync.class);
+
+    public H2ReplicaSync(DataSource primary, DataSource replica, String primaryUrl, String username, String password) {
+        this.primary = primary;
+        this.replica = replica;
+        this.primaryUrl = primaryUrl;
+        this.username = username;
+        this.password = password;
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replica.h2-sync-interval}")
+    public synchronized void sync() {
+        try (Connection source = primary.getConnection();
+             Connection target = replica.getConnection()) {
+            List<String> tables = listTables(source);
+            //Схема основной базы ещё не создана
+            if (tables.isEmpty()) {
+                return;
+            }
+            if (!schemaCreated) {
+                createSchema(source, target, tables);
+                schemaCreated = true;
+                logger.info("Схема реплики H2 создана, таблиц: {}", tables.size());
+            }
+            copy(target, tables);
+        } catch (SQLException e) {
+            logger.warn("Не удалось синхронизировать реплику H2", e);
+        }
+    }
+
+    private static List<String> listTables(Connection source) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (Statement statement = source.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES " +
+                     "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_TYPE = 'BASE TABLE' ORDER BY TABLE_NAME")) {
+            while (resultSet.next()) {
+                tables.add(resultSet.getString(1));
+            }
+        }
+        return tables;
+    }
+
+    //Реплика только читается, поэтому внешние ключи на ней не проверяются: таблицы копируются в любом порядке.
+    private void createSchema(Connection source, Connection target, List<String> tables) throws SQLException {
+        try (Statement script = source.createStatement();
+             ResultSet statements = script.executeQuery("SCRIPT NODATA NOPASSWORDS NOSETTINGS");
+             Statement ddl = target.createStatement()) {
+            while (statements.next()) {
+                ddl.execute(statements.getString(1));
+            }
+            ddl.execute("SET REFERENTIAL_INTEGRITY FALSE");
+            ddl.execute("CREATE TABLE IF NOT EXISTS replica_sync (synced_at TIMESTAMP WITH TIME ZONE)");
+        }
+        //Параметры в DDL не поддерживаются, поэтому значения подставляются строковыми литералами
+        try (Statement link = target.createStatement()) {
+            for (String table : tables) {
+                link.execute("CREATE LINKED TABLE IF NOT EXISTS \"" + LINK_PREFIX + table + "\"('org.h2.Driver', "
+                        + literal(primaryUrl) + ", " + literal(username) + ", " + literal(password) + ", 'PUBLIC', "
+                        + literal(table) + ") READONLY");
+            }
+        }
+    }
+
+    private static String literal(String value) {
+        return "'" + (value != null ? value : "").replace("'", "''") + "'";
+    }
+
+    private static void copy(Connection target, List<String> tables) throws SQLException {
+        boolean autoCommit = target.getAutoCommit();
+        target.setAutoCommit(false);
+        try (Statement statement = target.createStatement()) {
+            for (String table : tables) {
+                statement.executeUpdate("DELETE FROM \"" + table + "\"");
+                statement.executeUpdate("INSERT INTO \"" + table + "\" SELECT * FROM \"" + LINK_PREFIX + table + "\"");
+            }
+            statement.executeUpdate("DELETE FROM replica_sync");
+            statement.executeUpdate("INSERT INTO replica_sync VALUES (CURRENT_TIMESTAMP)");
+            target.commit();
+        } catch (SQLException e) {
+            target.rollback();
+            throw e;
+        } finally {
+            target.setAutoCommit(autoCommit);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ru.hogwarts.school.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import ru.hogwarts.school.metrics.MetricsRegistry;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+//Два пула (основная база из spring.datasource.*, реплика из datasource.replica.*) и маршрутизация между ними.
+//Включается datasource.replica.enabled=true; без него приложение работает с одним пулом Spring Boot.
+@Configuration
+@ConditionalOnProperty(name = "datasource.replica.enabled", havingValue = "true")
+public class ReadReplicaConfiguration {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    @ConfigurationProperties("datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${datasource.replica.url}") String url,
+                                              @Value("${datasource.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${datasource.replica.password:${spring.datasource.password:}}") String password) {
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+        dataSource.setPoolName("replica");
+        return dataSource;
+    }
+
+    //Только для локальной реплики на H2 (профиль h2-replica): настоящая реплика синхронизируется самой СУБД
+    @Bean
+    @ConditionalOnProperty("datasource.replica.h2-sync-interval")
+    public H2ReplicaSync h2ReplicaSync(@Qualifier("primaryDataSource") DataSource primary,
+                                       @Qualifier("replicaDataSource") DataSource replica,
+                                       DataSourceProperties properties) {
+        return new H2ReplicaSync(primary, replica, properties.determineUrl(), properties.determineUsername(),
+                properties.determinePassword());
+    }
+
+    @Bean
+    public ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replica,
+                                               @Value("${datasource.replica.lag-query}") String lagQuery,
+                                               MetricsRegistry registry) {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replica, lagQuery);
+        monitor.checkLag();
+        registry.gauge("datasource.replica.lag.seconds", monitor::getLagSeconds);
+        return monitor;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReplicaLagMonitor replicaLagMonitor,
+                                 @Value("${datasource.replica.max-lag:PT5S}") Duration maxLag,
+                                 MetricsRegistry registry) {
+        return new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(primary, replica, replicaLagMonitor, maxLag, registry));
+    }
+}
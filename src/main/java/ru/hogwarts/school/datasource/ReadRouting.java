@@ -0,0 +1,57 @@
+package ru.hogwarts.school.datasource;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+//Признаки маршрутизации чтения в текущем потоке для ReadWriteRoutingDataSource.
+//Реплика может отставать на max-lag: значение, прочитанное с неё сразу после инвалидации кеша,
+//вернуло бы в кеш старые данные до конца TTL. Поэтому загрузки для кешей идут в основную базу (primaryReads),
+//а кеши не сохраняют то, что прочитано в транзакции на реплике (isReplicaTransaction).
+//Без реплики (datasource.replica.enabled=false) признаки ни на что не влияют.
+public final class ReadRouting {
+    private static final ThreadLocal<Integer> primaryScopes = ThreadLocal.withInitial(() -> 0);
+    private static final ThreadLocal<Boolean> replicaTransaction = new ThreadLocal<>();
+
+    private ReadRouting() {
+    }
+
+    public interface Scope extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    //try (ReadRouting.Scope ignored = ReadRouting.primaryReads()) { ... } - чтения внутри идут в основную базу
+    public static Scope primaryReads() {
+        primaryScopes.set(primaryScopes.get() + 1);
+        return () -> {
+            int depth = primaryScopes.get() - 1;
+            if (depth == 0) {
+                primaryScopes.remove();
+            } else {
+                primaryScopes.set(depth);
+            }
+        };
+    }
+
+    static boolean isPrimaryRequired() {
+        return primaryScopes.get() > 0;
+    }
+
+    //Текущая транзакция получила соединение с реплики; признак снимается при её завершении
+    public static boolean isReplicaTransaction() {
+        return Boolean.TRUE.equals(replicaTransaction.get());
+    }
+
+    static void markReplicaTransaction() {
+        if (isReplicaTransaction() || !TransactionSynchronizationManager.isSynchronizationActive()) {
+            return;
+        }
+        replicaTransaction.set(true);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                replicaTransaction.remove();
+            }
+        });
+    }
+}
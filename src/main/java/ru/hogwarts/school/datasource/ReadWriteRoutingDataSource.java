@@ -0,0 +1,132 @@
+package ru.hogwarts.school.datasource;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import ru.hogwarts.school.metrics.MetricsRegistry;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+//Транзакции readOnly = true читают с реплики, остальные работают с основной базой.
+//Реплика не используется, если её отставание больше max-lag. Клиент, который только что изменил данные,
+//читает свои изменения: после коммита его пишущей транзакции ответ получает cookie primary-until,
+//и до этого момента (max-lag) его чтения идут в основную базу. Остальные клиенты продолжают читать с реплики.
+//Загрузки для кешей всегда читают основную базу (ReadRouting.primaryReads), иначе другой клиент вернул бы в кеш
+//значение до записи.
+//Решение принимается при получении соединения, поэтому источник оборачивается в LazyConnectionDataSourceProxy:
+//к этому моменту признак readOnly транзакции уже установлен.
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    static final String PRIMARY_UNTIL_COOKIE = "primary-until";
+    //Запись в текущем запросе: следующие чтения этого же запроса cookie ещё не видят
+    private static final String PRIMARY_UNTIL_ATTRIBUTE = ReadWriteRoutingDataSource.class.getName() + ".primaryUntil";
+
+    enum Target {
+        PRIMARY, REPLICA
+    }
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final Duration maxLag;
+    private final LongSupplier clock;
+    private final LongAdder primaryReads;
+    private final LongAdder replicaReads;
+    private final LongAdder writes;
+
+    public ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor,
+                                      Duration maxLag, MetricsRegistry registry) {
+        this(primary, replica, lagMonitor, maxLag, registry, System::currentTimeMillis);
+    }
+
+    //clock - текущее время в миллисекундах: оно же записывается в cookie
+    ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor,
+                               Duration maxLag, MetricsRegistry registry, LongSupplier clock) {
+        this.lagMonitor = lagMonitor;
+        this.maxLag = maxLag;
+        this.clock = clock;
+        this.primaryReads = registry.counter("datasource.routing", "target", "primary", "access", "read");
+        this.replicaReads = registry.counter("datasource.routing", "target", "replica", "access", "read");
+        this.writes = registry.counter("datasource.routing", "target", "primary", "access", "write");
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (!ReadRouting.isPrimaryRequired() && isReplicaUsable()) {
+                ReadRouting.markReplicaTransaction();
+                replicaReads.increment();
+                return Target.REPLICA;
+            }
+            primaryReads.increment();
+            return Target.PRIMARY;
+        }
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            writes.increment();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status == STATUS_COMMITTED) {
+                        pinClientToPrimary();
+                    }
+                }
+            });
+        }
+        return Target.PRIMARY;
+    }
+
+    boolean isReplicaUsable() {
+        return lagMonitor.getLagSeconds() * 1_000 <= maxLag.toMillis() && !isClientPinnedToPrimary();
+    }
+
+    private boolean isClientPinnedToPrimary() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return false;
+        }
+        HttpServletRequest request = attributes.getRequest();
+        Object pinnedInRequest = request.getAttribute(PRIMARY_UNTIL_ATTRIBUTE);
+        if (pinnedInRequest instanceof Long until && until > clock.getAsLong()) {
+            return true;
+        }
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return false;
+        }
+        for (Cookie cookie : cookies) {
+            if (PRIMARY_UNTIL_COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue()) > clock.getAsLong();
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return false;
+    }
+
+    //Вне HTTP-запроса (фоновые задачи) привязывать некого
+    private void pinClientToPrimary() {
+        if (!(RequestContextHolder.getRequestAttributes() instanceof ServletRequestAttributes attributes)) {
+            return;
+        }
+        long until = clock.getAsLong() + maxLag.toMillis();
+        attributes.getRequest().setAttribute(PRIMARY_UNTIL_ATTRIBUTE, until);
+        HttpServletResponse response = attributes.getResponse();
+        if (response != null && !response.isCommitted()) {
+            Cookie cookie = new Cookie(PRIMARY_UNTIL_COOKIE, Long.toString(until));
+            cookie.setPath("/");
+            cookie.setHttpOnly(true);
+            cookie.setMaxAge((int) Math.max(1, maxLag.toSeconds()));
+            response.addCookie(cookie);
+        }
+    }
+}
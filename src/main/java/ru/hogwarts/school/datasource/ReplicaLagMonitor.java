@@ -0,0 +1,47 @@
+package ru.hogwarts.school.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+//Периодически измеряет отставание реплики запросом lag-query (секунды).
+//Пока отставание не измерено или запрос не удался, реплика считается недоступной.
+public class ReplicaLagMonitor {
+    private final DataSource replica;
+    private final String lagQuery;
+    private volatile double lagSeconds = Double.POSITIVE_INFINITY;
+    Logger logger = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    public ReplicaLagMonitor(DataSource replica, String lagQuery) {
+        this.replica = replica;
+        this.lagQuery = lagQuery;
+    }
+
+    @Scheduled(fixedDelayString = "${datasource.replica.lag-check-interval:PT5S}")
+    public void checkLag() {
+        try (Connection connection = replica.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(lagQuery)) {
+            double measured = resultSet.next() ? resultSet.getDouble(1) : Double.POSITIVE_INFINITY;
+            if (Double.isInfinite(lagSeconds) && !Double.isInfinite(measured)) {
+                logger.info("Реплика доступна, отставание {} с", measured);
+            }
+            lagSeconds = measured;
+        } catch (SQLException e) {
+            if (!Double.isInfinite(lagSeconds)) {
+                logger.warn("Не удалось проверить отставание реплики, чтение переключено на основную базу", e);
+            }
+            lagSeconds = Double.POSITIVE_INFINITY;
+        }
+    }
+
+    public double getLagSeconds() {
+        return lagSeconds;
+    }
+}
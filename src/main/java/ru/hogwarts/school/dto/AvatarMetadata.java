@@ -0,0 +1,11 @@
+package ru.hogwarts.school.dto;
+
+import ru.hogwarts.school.repositories.AvatarMeta;
+
+public record AvatarMetadata(Long id, Long studentId, long size, String mediaType, String downloadUrl) {
+
+    public static AvatarMetadata of(AvatarMeta meta) {
+        return new AvatarMetadata(meta.getId(), meta.getStudentId(), meta.getFileSize(), meta.getMediaType(),
+                "/avatar/" + meta.getStudentId() + "/avatar-from-file");
+    }
+}
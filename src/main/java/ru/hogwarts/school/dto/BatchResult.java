@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+//Ответ на запрос по списку id: найденные - в порядке запроса, ненайденные id - отдельным списком.
+public record BatchResult<T>(List<T> items, List<Long> missing) {
+}
@@ -0,0 +1,7 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+//Страница для пагинации по курсору: nextCursor передаётся в следующий запрос как after.
+public record CursorPage<T>(List<T> content, Long nextCursor, boolean hasNext) {
+}
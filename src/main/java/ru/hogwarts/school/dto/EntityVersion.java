@@ -0,0 +1,41 @@
+package ru.hogwarts.school.dto;
+
+import java.time.Instant;
+
+//Версия сущности для условных запросов: ETag строится из @Version, Last-Modified - из времени изменения.
+public record EntityVersion(long version, Instant lastModified) {
+
+    public String eTag() {
+        return "\"" + version + "\"";
+    }
+
+    //If-None-Match: слабое сравнение, список через запятую или "*".
+    public boolean matchesIfNoneMatch(String ifNoneMatch) {
+        for (String tag : ifNoneMatch.split(",")) {
+            String value = tag.strip();
+            if (value.startsWith("W/")) {
+                value = value.substring(2);
+            }
+            if (value.equals("*") || value.equals(eTag())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //Ожидаемая версия из If-Match: null для "*", -1 если заголовок не похож на наш ETag (такой запрос получит 412).
+    public static Long fromIfMatch(String ifMatch) {
+        String value = ifMatch.strip();
+        if (value.equals("*")) {
+            return null;
+        }
+        if (value.length() < 3 || !value.startsWith("\"") || !value.endsWith("\"")) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(value.substring(1, value.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package ru.hogwarts.school.dto;
+
+//Сводка по факультету; для факультета без студентов averageAge, minAge и maxAge равны null.
+public record FacultyStatistics(long facultyId, long studentCount, Double averageAge, Integer minAge,
+                                Integer maxAge) {
+    public static FacultyStatistics empty(long facultyId) {
+        return new FacultyStatistics(facultyId, 0, null, null, null);
+    }
+}
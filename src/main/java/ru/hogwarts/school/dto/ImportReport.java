@@ -0,0 +1,10 @@
+package ru.hogwarts.school.dto;
+
+import java.util.List;
+
+public record ImportReport(long imported, long failed, List<BatchError> errors) {
+
+    //Ошибка пачки: строки с firstLine по lastLine не загружены.
+    public record BatchError(long firstLine, long lastLine, String message) {
+    }
+}
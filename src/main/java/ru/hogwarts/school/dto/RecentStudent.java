@@ -0,0 +1,4 @@
+package ru.hogwarts.school.dto;
+
+public record RecentStudent(long id, String name, int age) {
+}
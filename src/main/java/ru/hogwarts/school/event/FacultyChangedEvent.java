@@ -0,0 +1,5 @@
+package ru.hogwarts.school.event;
+
+//Факультет добавлен, изменён или удалён. Публикуется внутри транзакции, как и StudentChangedEvent.
+public record FacultyChangedEvent(long facultyId) {
+}
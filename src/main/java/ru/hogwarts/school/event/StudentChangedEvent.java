@@ -0,0 +1,28 @@
+package ru.hogwarts.school.event;
+
+import ru.hogwarts.school.model.Student;
+
+//Изменение студента: before == null - студент добавлен, after == null - удалён.
+//Публикуется внутри транзакции; слушатели обычно обрабатывают его после коммита.
+public record StudentChangedEvent(Snapshot before, Snapshot after) {
+
+    //Значения полей на момент события: сущность после коммита может измениться или стать detached.
+    public record Snapshot(long id, String name, int age, Long facultyId) {
+        public static Snapshot of(Student student) {
+            Long facultyId = student.getFaculty() != null ? student.getFaculty().getId() : null;
+            return new Snapshot(student.getId(), student.getName(), student.getAge(), facultyId);
+        }
+    }
+
+    public static StudentChangedEvent created(Student student) {
+        return new StudentChangedEvent(null, Snapshot.of(student));
+    }
+
+    public static StudentChangedEvent updated(Snapshot before, Student student) {
+        return new StudentChangedEvent(before, Snapshot.of(student));
+    }
+
+    public static StudentChangedEvent deleted(Snapshot before) {
+        return new StudentChangedEvent(before, null);
+    }
+}
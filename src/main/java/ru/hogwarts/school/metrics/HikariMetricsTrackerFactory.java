@@ -0,0 +1,50 @@
+package ru.hogwarts.school.metrics;
+
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+//Метрики пула HikariCP: ожидание соединения, время его использования, таймауты и состояние пула.
+public class HikariMetricsTrackerFactory implements MetricsTrackerFactory {
+    private final MetricsRegistry registry;
+
+    public HikariMetricsTrackerFactory(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        registry.gauge("jdbc.connections.active", poolStats::getActiveConnections, "pool", poolName);
+        registry.gauge("jdbc.connections.idle", poolStats::getIdleConnections, "pool", poolName);
+        registry.gauge("jdbc.connections.pending", poolStats::getPendingThreads, "pool", poolName);
+        registry.gauge("jdbc.connections.max", poolStats::getMaxConnections, "pool", poolName);
+        Histogram acquire = registry.timer("jdbc.connections.acquire", "pool", poolName);
+        Histogram usage = registry.timer("jdbc.connections.usage", "pool", poolName);
+        Histogram creation = registry.timer("jdbc.connections.creation", "pool", poolName);
+        LongAdder timeouts = registry.counter("jdbc.connections.timeout", "pool", poolName);
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquire.record(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usage.record(TimeUnit.MILLISECONDS.toNanos(elapsedBorrowedMillis));
+            }
+
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                creation.record(TimeUnit.MILLISECONDS.toNanos(connectionCreatedMillis));
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+}
@@ -0,0 +1,96 @@
+package ru.hogwarts.school.metrics;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+//Обёртка над пулом соединений: считает выполненные SQL-запросы и их время.
+//Общая статистика пишется в таймер jdbc.statements, а внутри startCounting()/finishCounting()
+//запросы текущего потока дополнительно суммируются, чтобы видеть их число и время на один HTTP-запрос.
+public class MeteredDataSource extends DelegatingDataSource {
+    private static final ThreadLocal<Counts> CURRENT = new ThreadLocal<>();
+
+    private final Histogram statements;
+
+    public MeteredDataSource(DataSource target, MetricsRegistry registry) {
+        super(target);
+        this.statements = registry.timer("jdbc.statements");
+    }
+
+    public record Counts(long statements, long nanos) {
+    }
+
+    public static void startCounting() {
+        CURRENT.set(new Counts(0, 0));
+    }
+
+    public static Counts finishCounting() {
+        Counts counts = CURRENT.get();
+        CURRENT.remove();
+        return counts != null ? counts : new Counts(0, 0);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(Connection.class, super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(Connection.class, super.getConnection(username, password));
+    }
+
+    private <T> T wrap(Class<T> type, T target) {
+        return type.cast(Proxy.newProxyInstance(MeteredDataSource.class.getClassLoader(), new Class<?>[]{type},
+                new Handler(target)));
+    }
+
+    private void recordStatement(long nanos) {
+        statements.record(nanos);
+        Counts counts = CURRENT.get();
+        if (counts != null) {
+            CURRENT.set(new Counts(counts.statements() + 1, counts.nanos() + nanos));
+        }
+    }
+
+    //Соединение отдаёт обёрнутые Statement, у которых замеряются методы execute*.
+    private class Handler implements InvocationHandler {
+        private final Object target;
+
+        Handler(Object target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            boolean execute = target instanceof Statement && method.getName().startsWith("execute");
+            long start = execute ? System.nanoTime() : 0;
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            } finally {
+                if (execute) {
+                    recordStatement(System.nanoTime() - start);
+                }
+            }
+            Class<?> returnType = method.getReturnType();
+            if (result != null && (returnType == Statement.class || returnType == PreparedStatement.class
+                    || returnType == CallableStatement.class)) {
+                return Proxy.newProxyInstance(MeteredDataSource.class.getClassLoader(), new Class<?>[]{returnType},
+                        new Handler(result));
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package ru.hogwarts.school.metrics;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.spi.RegionFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnThreading;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import ru.hogwarts.school.cache.BoundedTtlCache;
+import ru.hogwarts.school.cache.BoundedTtlRegionFactory;
+import ru.hogwarts.school.cache.ResponseCache;
+import ru.hogwarts.school.cache.SingleFlight;
+import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.StudentService;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.function.ToDoubleFunction;
+
+//Подключение метрик: фильтр HTTP-запросов, обёртка над DataSource, метрики пула,
+//статистика Hibernate (hibernate.generate_statistics, профиль dev), счётчики кешей факультетов, ответов и регионов Hibernate,
+//объединение одинаковых загрузок студентов и факультетов
+//и, в режиме виртуальных потоков, диагностика их закрепления за потоком-носителем.
+@Configuration
+public class MetricsConfiguration {
+
+    @Bean
+    public FilterRegistrationBean<RequestMetricsFilter> requestMetricsFilter(MetricsRegistry registry) {
+        FilterRegistrationBean<RequestMetricsFilter> registration =
+                new FilterRegistrationBean<>(new RequestMetricsFilter(registry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    @Bean
+    public static BeanPostProcessor meteredDataSourcePostProcessor(ObjectProvider<MetricsRegistry> registry) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource hikari && hikari.getMetricsTrackerFactory() == null) {
+                    hikari.setMetricsTrackerFactory(new HikariMetricsTrackerFactory(registry.getObject()));
+                }
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                //Оборачиваются сами пулы: маршрутизирующий DataSource поверх них иначе считал бы запросы дважды
+                if (bean instanceof HikariDataSource dataSource) {
+                    return new MeteredDataSource(dataSource, registry.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+
+    @Bean
+    public SmartInitializingSingleton hibernateMetrics(MetricsRegistry registry,
+                                                       ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        return () -> entityManagerFactory.ifAvailable(factory -> {
+            Statistics statistics = factory.unwrap(SessionFactory.class).getStatistics();
+            if (!statistics.isStatisticsEnabled()) {
+                return;
+            }
+            bind(registry, statistics, "hibernate.sessions.open", Statistics::getSessionOpenCount);
+            bind(registry, statistics, "hibernate.sessions.closed", Statistics::getSessionCloseCount);
+            bind(registry, statistics, "hibernate.transactions", Statistics::getTransactionCount);
+            bind(registry, statistics, "hibernate.statements.prepared", Statistics::getPrepareStatementCount);
+            bind(registry, statistics, "hibernate.flushes", Statistics::getFlushCount);
+            bind(registry, statistics, "hibernate.query.executions", Statistics::getQueryExecutionCount);
+            bind(registry, statistics, "hibernate.entities.loaded", Statistics::getEntityLoadCount);
+            bind(registry, statistics, "hibernate.entities.fetched", Statistics::getEntityFetchCount);
+            bind(registry, statistics, "hibernate.entities.inserted", Statistics::getEntityInsertCount);
+            bind(registry, statistics, "hibernate.entities.updated", Statistics::getEntityUpdateCount);
+            bind(registry, statistics, "hibernate.entities.deleted", Statistics::getEntityDeleteCount);
+            bind(registry, statistics, "hibernate.collections.loaded", Statistics::getCollectionLoadCount);
+            bind(registry, statistics, "hibernate.collections.fetched", Statistics::getCollectionFetchCount);
+            bind(registry, statistics, "hibernate.second.level.cache.hits", Statistics::getSecondLevelCacheHitCount);
+            bind(registry, statistics, "hibernate.second.level.cache.misses",
+                    Statistics::getSecondLevelCacheMissCount);
+            bind(registry, statistics, "hibernate.query.cache.hits", Statistics::getQueryCacheHitCount);
+            bind(registry, statistics, "hibernate.query.cache.misses", Statistics::getQueryCacheMissCount);
+            bind(registry, statistics, "hibernate.optimistic.failures", Statistics::getOptimisticFailureCount);
+            registry.gauge("hibernate.query.execution.max.seconds",
+                    () -> statistics.getQueryExecutionMaxTime() / 1000.0);
+        });
+    }
+
+    @Bean
+    public SmartInitializingSingleton cacheMetrics(MetricsRegistry registry,
+                                                   ObjectProvider<FacultyService> facultyService,
+                                                   ObjectProvider<ResponseCache> responseCache,
+                                                   ObjectProvider<EntityManagerFactory> entityManagerFactory) {
+        return () -> {
+            facultyService.ifAvailable(service -> bindCaches(registry, service::getCacheStats));
+            responseCache.ifAvailable(cache -> bindCaches(registry, () -> List.of(cache.stats())));
+            entityManagerFactory.ifAvailable(factory -> {
+                RegionFactory regionFactory = factory.unwrap(SessionFactoryImplementor.class).getCache().getRegionFactory();
+                if (regionFactory instanceof BoundedTtlRegionFactory regions) {
+                    bindCaches(registry, regions::getRegionStats);
+                }
+            });
+        };
+    }
+
+    private static void bindCaches(MetricsRegistry registry, Supplier<List<BoundedTtlCache.Stats>> caches) {
+        for (BoundedTtlCache.Stats stats : caches.get()) {
+            String cache = stats.name();
+            registry.gauge("cache.size", () -> cacheStat(caches, cache, BoundedTtlCache.Stats::size),
+                    "cache", cache);
+            registry.functionCounter("cache.hits", () -> cacheStat(caches, cache, BoundedTtlCache.Stats::hits),
+                    "cache", cache);
+            registry.functionCounter("cache.misses",
+                    () -> cacheStat(caches, cache, BoundedTtlCache.Stats::misses), "cache", cache);
+            registry.functionCounter("cache.evictions",
+                    () -> cacheStat(caches, cache, BoundedTtlCache.Stats::evictions), "cache", cache);
+        }
+    }
+
+    @Bean
+    public SmartInitializingSingleton lookupMetrics(MetricsRegistry registry,
+                                                    ObjectProvider<StudentService> studentService,
+                                                    ObjectProvider<FacultyService> facultyService) {
+        return () -> {
+            studentService.ifAvailable(service -> bindLookups(registry, service::getLookupStats));
+            facultyService.ifAvailable(service -> bindLookups(registry, service::getLookupStats));
+        };
+    }
+
+    //Объединение одинаковых загрузок: collapse.ratio - доля вызовов, дождавшихся чужой загрузки
+    private static void bindLookups(MetricsRegistry registry, Supplier<List<SingleFlight.Stats>> lookups) {
+        for (SingleFlight.Stats stats : lookups.get()) {
+            String lookup = stats.name();
+            registry.functionCounter("singleflight.leaders",
+                    () -> lookupStat(lookups, lookup, SingleFlight.Stats::leaders), "lookup", lookup);
+            registry.functionCounter("singleflight.followers",
+                    () -> lookupStat(lookups, lookup, SingleFlight.Stats::followers), "lookup", lookup);
+            registry.functionCounter("singleflight.timeouts",
+                    () -> lookupStat(lookups, lookup, SingleFlight.Stats::timeouts), "lookup", lookup);
+            registry.gauge("singleflight.in.flight",
+                    () -> lookupStat(lookups, lookup, SingleFlight.Stats::inFlight), "lookup", lookup);
+            registry.gauge("singleflight.collapse.ratio",
+                    () -> lookupStat(lookups, lookup, SingleFlight.Stats::collapseRatio), "lookup", lookup);
+        }
+    }
+
+    @Bean
+    @ConditionalOnThreading(Threading.VIRTUAL)
+    @ConditionalOnProperty(name = "virtual-threads.pinning-monitor.enabled", matchIfMissing = true)
+    public VirtualThreadPinningMonitor virtualThreadPinningMonitor(
+            MetricsRegistry registry,
+            @Value("${virtual-threads.pinning-monitor.threshold:PT0.02S}") Duration threshold) {
+        return new VirtualThreadPinningMonitor(registry, threshold);
+    }
+
+    private static void bind(MetricsRegistry registry, Statistics statistics, String name,
+                             ToDoubleFunction<Statistics> value) {
+        registry.functionCounter(name, () -> value.applyAsDouble(statistics));
+    }
+
+    private static double lookupStat(Supplier<List<SingleFlight.Stats>> lookups, String lookup,
+                                     ToDoubleFunction<SingleFlight.Stats> value) {
+        return lookups.get().stream()
+                .filter(stats -> stats.name().equals(lookup))
+                .mapToDouble(value)
+                .findFirst()
+                .orElse(0);
+    }
+
+    private static double cacheStat(Supplier<List<BoundedTtlCache.Stats>> caches, String cache,
+                                    ToDoubleFunction<BoundedTtlCache.Stats> value) {
+        return caches.get().stream()
+                .filter(stats -> stats.name().equals(cache))
+                .mapToDouble(value)
+                .findFirst()
+                .orElse(0);
+    }
+}
@@ -0,0 +1,105 @@
+package ru.hogwarts.school.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleSupplier;
+
+//Хранилище метрик приложения. Теги передаются парами "ключ", "значение".
+//timer - гистограмма длительностей в наносекундах, distribution - гистограмма количеств,
+//counter - монотонный счётчик, gauge - текущее значение, которое читается при выгрузке.
+@Component
+public class MetricsRegistry {
+    private final ConcurrentMap<MetricId, Histogram> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<MetricId, Histogram> distributions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<MetricId, DoubleSupplier> counters = new ConcurrentHashMap<>();
+    private final ConcurrentMap<MetricId, DoubleSupplier> gauges = new ConcurrentHashMap<>();
+
+    public record MetricId(String name, Map<String, String> tags) {
+    }
+
+    public record HistogramSample(String name, Map<String, String> tags, long count, double sum, double max,
+                                  double p50, double p99, double p999) {
+    }
+
+    public record ValueSample(String name, Map<String, String> tags, double value) {
+    }
+
+    public record MetricsSnapshot(List<HistogramSample> timers, List<HistogramSample> distributions,
+                                  List<ValueSample> counters, List<ValueSample> gauges) {
+    }
+
+    public Histogram timer(String name, String... tags) {
+        return timers.computeIfAbsent(id(name, tags), key -> new Histogram());
+    }
+
+    public Histogram distribution(String name, String... tags) {
+        return distributions.computeIfAbsent(id(name, tags), key -> new Histogram());
+    }
+
+    public LongAdder counter(String name, String... tags) {
+        LongAdder adder = new LongAdder();
+        DoubleSupplier existing = counters.putIfAbsent(id(name, tags), new AdderCounter(adder));
+        return existing instanceof AdderCounter counter ? counter.adder() : adder;
+    }
+
+    //Счётчик, значение которого ведёт кто-то другой (например, статистика Hibernate).
+    public void functionCounter(String name, DoubleSupplier value, String... tags) {
+        counters.put(id(name, tags), value);
+    }
+
+    public void gauge(String name, DoubleSupplier value, String... tags) {
+        gauges.put(id(name, tags), value);
+    }
+
+    public MetricsSnapshot snapshot() {
+        return new MetricsSnapshot(histograms(timers, 1e-9), histograms(distributions, 1),
+                values(counters), values(gauges));
+    }
+
+    private record AdderCounter(LongAdder adder) implements DoubleSupplier {
+        @Override
+        public double getAsDouble() {
+            return adder.sum();
+        }
+    }
+
+    private static MetricId id(String name, String... tags) {
+        if (tags.length % 2 != 0) {
+            throw new IllegalArgumentException("Теги задаются парами ключ-значение: " + name);
+        }
+        Map<String, String> map = new LinkedHashMap<>();
+        for (int i = 0; i < tags.length; i += 2) {
+            map.put(tags[i], tags[i + 1] != null ? tags[i + 1] : "none");
+        }
+        return new MetricId(name, Collections.unmodifiableMap(map));
+    }
+
+    //scale переводит значения в базовые единицы: наносекунды таймеров выгружаются в секундах.
+    private static List<HistogramSample> histograms(Map<MetricId, Histogram> source, double scale) {
+        List<HistogramSample> samples = new ArrayList<>(source.size());
+        source.forEach((id, histogram) -> {
+            Histogram.Snapshot snapshot = histogram.snapshot();
+            samples.add(new HistogramSample(id.name(), id.tags(), snapshot.count(), snapshot.sum() * scale,
+                    snapshot.max() * scale, snapshot.p50() * scale, snapshot.p99() * scale,
+                    snapshot.p999() * scale));
+        });
+        samples.sort(Comparator.comparing(HistogramSample::name).thenComparing(sample -> sample.tags().toString()));
+        return samples;
+    }
+
+    private static List<ValueSample> values(Map<MetricId, DoubleSupplier> source) {
+        List<ValueSample> samples = new ArrayList<>(source.size());
+        source.forEach((id, value) -> samples.add(new ValueSample(id.name(), id.tags(), value.getAsDouble())));
+        samples.sort(Comparator.comparing(ValueSample::name).thenComparing(sample -> sample.tags().toString()));
+        return samples;
+    }
+}
@@ -0,0 +1,102 @@
+package ru.hogwarts.school.metrics;
+
+import java.util.List;
+import java.util.Map;
+
+//Выгрузка снимка метрик в текстовом формате Prometheus (version=0.0.4).
+//Гистограммы выгружаются как summary с квантилями 0.5/0.99/0.999 и отдельным gauge *_max.
+public final class PrometheusFormat {
+    public static final String CONTENT_TYPE = "text/plain;version=0.0.4;charset=utf-8";
+
+    private PrometheusFormat() {
+    }
+
+    public static String write(MetricsRegistry.MetricsSnapshot snapshot) {
+        StringBuilder out = new StringBuilder(4096);
+        writeHistograms(out, snapshot.timers(), "_seconds");
+        writeHistograms(out, snapshot.distributions(), "");
+        writeValues(out, snapshot.counters(), "counter", "_total");
+        writeValues(out, snapshot.gauges(), "gauge", "");
+        return out.toString();
+    }
+
+    private static void writeHistograms(StringBuilder out, List<MetricsRegistry.HistogramSample> samples,
+                                        String suffix) {
+        String current = null;
+        for (MetricsRegistry.HistogramSample sample : samples) {
+            String name = sanitize(sample.name()) + suffix;
+            if (!name.equals(current)) {
+                current = name;
+                out.append("# TYPE ").append(name).append(" summary\n");
+            }
+            line(out, name, sample.tags(), "quantile", "0.5", sample.p50());
+            line(out, name, sample.tags(), "quantile", "0.99", sample.p99());
+            line(out, name, sample.tags(), "quantile", "0.999", sample.p999());
+            line(out, name + "_count", sample.tags(), null, null, sample.count());
+            line(out, name + "_sum", sample.tags(), null, null, sample.sum());
+        }
+        current = null;
+        for (MetricsRegistry.HistogramSample sample : samples) {
+            String name = sanitize(sample.name()) + suffix + "_max";
+            if (!name.equals(current)) {
+                current = name;
+                out.append("# TYPE ").append(name).append(" gauge\n");
+            }
+            line(out, name, sample.tags(), null, null, sample.max());
+        }
+    }
+
+    private static void writeValues(StringBuilder out, List<MetricsRegistry.ValueSample> samples, String type,
+                                    String suffix) {
+        String current = null;
+        for (MetricsRegistry.ValueSample sample : samples) {
+            String name = sanitize(sample.name()) + suffix;
+            if (!name.equals(current)) {
+                current = name;
+                out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+            }
+            line(out, name, sample.tags(), null, null, sample.value());
+        }
+    }
+
+    private static void line(StringBuilder out, String name, Map<String, String> tags,
+                             String extraKey, String extraValue, double value) {
+        out.append(name);
+        if (!tags.isEmpty() || extraKey != null) {
+            out.append('{');
+            boolean first = true;
+            for (Map.Entry<String, String> tag : tags.entrySet()) {
+                first = label(out, first, tag.getKey(), tag.getValue());
+            }
+            if (extraKey != null) {
+                label(out, first, extraKey, extraValue);
+            }
+            out.append('}');
+        }
+        out.append(' ').append(format(value)).append('\n');
+    }
+
+    private static boolean label(StringBuilder out, boolean first, String key, String value) {
+        if (!first) {
+            out.append(',');
+        }
+        out.append(sanitize(key)).append("=\"")
+                .append(value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+                .append('"');
+        return false;
+    }
+
+    private static String sanitize(String name) {
+        return name.replaceAll("[^a-zA-Z0-9_]", "_");
+    }
+
+    private static String format(double value) {
+        if (Double.isInfinite(value)) {
+            return value > 0 ? "+Inf" : "-Inf";
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+}
@@ -0,0 +1,93 @@
+package ru.hogwarts.school.metrics;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+
+//Метрики HTTP-запросов по шаблону пути (/student/{id}, а не /student/42):
+//длительность (http.server.requests), число SQL-запросов и их суммарное время на один запрос.
+//Для асинхронных ответов (потоковая выгрузка) длительность фиксируется по завершении ответа.
+public class RequestMetricsFilter extends OncePerRequestFilter {
+    private final MetricsRegistry registry;
+
+    public RequestMetricsFilter(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long start = System.nanoTime();
+        MeteredDataSource.startCounting();
+        boolean failed = true;
+        try {
+            filterChain.doFilter(request, response);
+            failed = false;
+        } finally {
+            MeteredDataSource.Counts counts = MeteredDataSource.finishCounting();
+            String uri = uri(request, response);
+            registry.distribution("http.server.jdbc.statements", "uri", uri).record(counts.statements());
+            registry.timer("http.server.jdbc.time", "uri", uri).record(counts.nanos());
+            if (!failed && request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new CompletionListener(request.getMethod(), uri, start));
+            } else {
+                record(request.getMethod(), failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus(),
+                        uri, start);
+            }
+        }
+    }
+
+    private void record(String method, int status, String uri, long start) {
+        registry.timer("http.server.requests",
+                "method", method,
+                "uri", uri,
+                "status", Integer.toString(status)).record(System.nanoTime() - start);
+    }
+
+    private static String uri(HttpServletRequest request, HttpServletResponse response) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (pattern != null) {
+            return pattern.toString();
+        }
+        //Без шаблона путь не попадает в теги, иначе число метрик растёт с каждым новым адресом
+        return response.getStatus() == HttpServletResponse.SC_NOT_FOUND ? "NOT_FOUND" : "UNKNOWN";
+    }
+
+    private class CompletionListener implements AsyncListener {
+        private final String method;
+        private final String uri;
+        private final long start;
+
+        CompletionListener(String method, String uri, long start) {
+            this.method = method;
+            this.uri = uri;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            HttpServletResponse response = (HttpServletResponse) event.getSuppliedResponse();
+            record(method, response.getStatus(), uri, start);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
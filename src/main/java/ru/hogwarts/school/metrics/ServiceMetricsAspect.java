@@ -0,0 +1,34 @@
+package ru.hogwarts.school.metrics;
+
+import org.aspectj.lang.ProceedingJoinPoint;
+import org.aspectj.lang.annotation.Around;
+import org.aspectj.lang.annotation.Aspect;
+import org.springframework.stereotype.Component;
+
+//Время выполнения публичных методов сервисов (бины с @Service) - таймер service.method.
+@Aspect
+@Component
+public class ServiceMetricsAspect {
+    private final MetricsRegistry registry;
+
+    public ServiceMetricsAspect(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @Around("@within(org.springframework.stereotype.Service) && execution(public * *(..))")
+    public Object measure(ProceedingJoinPoint joinPoint) throws Throwable {
+        long start = System.nanoTime();
+        String exception = "none";
+        try {
+            return joinPoint.proceed();
+        } catch (Throwable e) {
+            exception = e.getClass().getSimpleName();
+            throw e;
+        } finally {
+            registry.timer("service.method",
+                    "class", joinPoint.getSignature().getDeclaringType().getSimpleName(),
+                    "method", joinPoint.getSignature().getName(),
+                    "exception", exception).record(System.nanoTime() - start);
+        }
+    }
+}
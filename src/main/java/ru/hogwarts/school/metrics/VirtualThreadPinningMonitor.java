@@ -0,0 +1,85 @@
+package ru.hogwarts.school.metrics;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.SmartLifecycle;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+//Следит за событиями JFR jdk.VirtualThreadPinned: виртуальный поток заблокировался внутри synchronized
+//или нативного вызова и занял поток-носитель. Каждое событие дольше порога считается в jvm.threads.virtual.pinned,
+//а место в коде приложения (или первый кадр стека) один раз пишется в лог с полным стеком.
+public class VirtualThreadPinningMonitor implements SmartLifecycle {
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_REPORTED_FRAMES = 100;
+
+    private final Duration threshold;
+    private final LongAdder pinned;
+    private final Histogram duration;
+    private final Set<String> reportedFrames = ConcurrentHashMap.newKeySet();
+    private volatile RecordingStream stream;
+    Logger logger = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    public VirtualThreadPinningMonitor(MetricsRegistry registry, Duration threshold) {
+        this.threshold = threshold;
+        this.pinned = registry.counter("jvm.threads.virtual.pinned");
+        this.duration = registry.timer("jvm.threads.virtual.pinned.duration");
+    }
+
+    @Override
+    public void start() {
+        RecordingStream recording = new RecordingStream();
+        recording.enable(EVENT).withThreshold(threshold).withStackTrace();
+        recording.onEvent(EVENT, this::onPinned);
+        recording.startAsync();
+        stream = recording;
+        logger.info("Virtual thread pinning monitor started, threshold {}", threshold);
+    }
+
+    @Override
+    public void stop() {
+        RecordingStream recording = stream;
+        stream = null;
+        if (recording != null) {
+            recording.close();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return stream != null;
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinned.increment();
+        duration.record(event.getDuration().toNanos());
+        String frame = topFrame(event.getStackTrace());
+        if (reportedFrames.size() < MAX_REPORTED_FRAMES && reportedFrames.add(frame)) {
+            logger.warn("Virtual thread pinned for {} ms at {}\n{}", event.getDuration().toMillis(), frame,
+                    event.getStackTrace());
+        }
+    }
+
+    private static String topFrame(RecordedStackTrace stackTrace) {
+        if (stackTrace == null || stackTrace.getFrames().isEmpty()) {
+            return "unknown";
+        }
+        for (RecordedFrame frame : stackTrace.getFrames()) {
+            if (frame.isJavaFrame() && frame.getMethod().getType().getName().startsWith("ru.hogwarts.")) {
+                return describe(frame);
+            }
+        }
+        return describe(stackTrace.getFrames().get(0));
+    }
+
+    private static String describe(RecordedFrame frame) {
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
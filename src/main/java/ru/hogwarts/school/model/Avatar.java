@@ -1,8 +1,13 @@
 package ru.hogwarts.school.model;
 
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
+//Только метаданные: устаревшее содержимое в БД отображено в AvatarData и в кеш второго уровня не попадает.
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "avatar")
 public class Avatar {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -10,17 +15,17 @@ public class Avatar {
     private String filePath;
     private long fileSize;
     private String mediaType;
-    private byte[] data;
-    @OneToOne
+    private String contentHash;
+    //Устаревшее поле: новые загрузки хранят только хэш содержимого.
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "student_id", unique = true)
     private Student student;
 
     public Avatar() {
     }
 
-    public Avatar(Student student, byte[] data, String mediaType, long fileSize, String filePath, Long id) {
+    public Avatar(Student student, String mediaType, long fileSize, String filePath, Long id) {
         this.student = student;
-        this.data = data;
         this.mediaType = mediaType;
         this.fileSize = fileSize;
         this.filePath = filePath;
@@ -42,8 +47,8 @@ public class Avatar {
         return mediaType;
     }
 
-    public byte[] getData() {
-        return data;
+    public String getContentHash() {
+        return contentHash;
     }
 
     public Student getStudent() {
@@ -54,8 +59,8 @@ public class Avatar {
         this.student = student;
     }
 
-    public void setData(byte[] data) {
-        this.data = data;
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
     }
 
     public void setMediaType(String mediaType) {
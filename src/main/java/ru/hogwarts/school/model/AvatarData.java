@@ -0,0 +1,27 @@
+package ru.hogwarts.school.model;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+//Устаревшее содержимое аватара в БД: отдельная сущность на той же таблице, без кеша второго уровня.
+//Avatar кешируется, и массив байт в каждой его записи кеша снова занимал бы память.
+@Entity
+@Table(name = "avatar")
+public class AvatarData {
+    @Id
+    private Long id;
+    private byte[] data;
+
+    public Long getId() {
+        return id;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public void setData(byte[] data) {
+        this.data = data;
+    }
+}
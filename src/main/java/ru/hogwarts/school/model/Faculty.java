@@ -2,12 +2,19 @@ package ru.hogwarts.school.model;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import java.time.Instant;
 import java.util.List;
 import java.util.Set;
 
 
-@JsonIgnoreProperties({"faculty", "avatar"})
+//Состав факультета не сериализуется: для него есть отдельный запрос /faculty/students/{id}
+@JsonIgnoreProperties({"faculty", "avatar", "students", "version", "lastModified",
+        "hibernateLazyInitializer", "handler"})
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "faculty")
 @Table(name = "faculties")
 public class Faculty {
 
@@ -19,6 +26,12 @@ public class Faculty {
     @JsonProperty("color")
     private String color;
 
+    //Версия для оптимистичной блокировки и ETag
+    @Version
+    private long version;
+    @Column(name = "last_modified")
+    private Instant lastModified;
+
     @OneToMany(mappedBy = "faculty")
     private List<Student> students;
 
@@ -55,5 +68,27 @@ public class Faculty {
         this.id = id;
     }
 
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(Instant lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void beforeSave() {
+        lastModified = Instant.now();
+    }
+
     public List<Student> getStudents() { return students; }
 }
@@ -2,24 +2,43 @@ package ru.hogwarts.school.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
-@JsonIgnoreProperties({"faculty", "avatar", "students",
+import java.time.Instant;
+import java.util.Locale;
+
+@JsonIgnoreProperties({"faculty", "avatar", "students", "nameNormalized", "version", "lastModified",
         "hibernateLazyInitializer", "handler"})
 
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "student")
 public class Student {
 
+    //pooled-оптимизатор: id выделяются блоками по 50 за одно обращение к последовательности
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "student_seq")
+    @SequenceGenerator(name = "student_seq", sequenceName = "student_seq", allocationSize = 50)
     private Long id;
     private String name;
     private int age;
 
+    //Имя в верхнем регистре без крайних пробелов - по нему идёт поиск с индексом (см. student-name-search.sql)
+    @Column(name = "name_normalized")
+    private String nameNormalized;
+
+    //Версия для оптимистичной блокировки и ETag
+    @Version
+    private long version;
+    @Column(name = "last_modified")
+    private Instant lastModified;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "faculty_id")
     private Faculty faculty;
 
-    @OneToOne
+    @OneToOne(fetch = FetchType.LAZY)
     @JoinColumn(name="avatar_id")
     private Avatar avatar;
 
@@ -57,6 +76,33 @@ public class Student {
         return name;
     }
 
+    public String getNameNormalized() {
+        return nameNormalized;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public Instant getLastModified() {
+        return lastModified;
+    }
+
+    @PrePersist
+    @PreUpdate
+    void beforeSave() {
+        nameNormalized = normalizeName(name);
+        lastModified = Instant.now();
+    }
+
+    public static String normalizeName(String name) {
+        return name != null ? name.strip().toUpperCase(Locale.ROOT) : null;
+    }
+
     public Faculty getFaculty() { return faculty; }
 
     public void setFaculty(Faculty faculty) {
@@ -0,0 +1,7 @@
+package ru.hogwarts.school.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import ru.hogwarts.school.model.AvatarData;
+
+public interface AvatarDataRepository extends JpaRepository<AvatarData, Long> {
+}
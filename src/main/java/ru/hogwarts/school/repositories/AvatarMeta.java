@@ -0,0 +1,11 @@
+package ru.hogwarts.school.repositories;
+
+public interface AvatarMeta {
+    Long getId();
+
+    Long getStudentId();
+
+    long getFileSize();
+
+    String getMediaType();
+}
@@ -1,10 +1,39 @@
 package ru.hogwarts.school.repositories;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import ru.hogwarts.school.model.Avatar;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface AvatarRepository extends JpaRepository<Avatar, Long> {
+    //В кеше запросов только id, сама запись - метаданные из региона avatar
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<Avatar> findByStudentId(Long studentId);
-}
\ No newline at end of file
+
+    long countByContentHash(String contentHash);
+
+    //Студент нужен в ответе /avatar/list, поэтому загружается тем же запросом
+    @Override
+    @EntityGraph(attributePaths = "student")
+    Page<Avatar> findAll(Pageable pageable);
+
+    //Только нужные поля; Slice не делает запрос COUNT(*).
+    @Query("SELECT a.id AS id, a.student.id AS studentId, a.fileSize AS fileSize, a.mediaType AS mediaType " +
+            "FROM Avatar a WHERE a.id > :afterId ORDER BY a.id")
+    Slice<AvatarMeta> findMetaAfter(@Param("afterId") long afterId, Pageable pageable);
+
+    @Query("SELECT a.id AS id, a.student.id AS studentId, a.fileSize AS fileSize, a.mediaType AS mediaType " +
+            "FROM Avatar a WHERE a.student.id IN :studentIds")
+    List<AvatarMeta> findMetaByStudentIds(@Param("studentIds") Collection<Long> studentIds);
+}
@@ -0,0 +1,9 @@
+package ru.hogwarts.school.repositories;
+
+public interface FacultyAgeCount {
+    Long getFacultyId();
+
+    int getAge();
+
+    long getStudents();
+}
@@ -0,0 +1,9 @@
+package ru.hogwarts.school.repositories;
+
+public interface FacultyExportRow {
+    Long getId();
+
+    String getName();
+
+    String getColor();
+}
@@ -1,20 +1,42 @@
 package ru.hogwarts.school.repositories;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import ru.hogwarts.school.dto.EntityVersion;
 import ru.hogwarts.school.model.Faculty;
 
 import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface FacultyRepository extends JpaRepository<Faculty, Long>{
+    //Поиск факультетов кешируется в кеше запросов и сбрасывается Hibernate при изменении таблицы faculties.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Collection<Faculty> findByNameIgnoreCaseAndColorIgnoreCase(
         @Param("name") String name,
         @Param("color") String color
 );
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Collection<Faculty> findByNameIgnoreCase(String name);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Collection<Faculty> findByColorIgnoreCase(String color);
+
+    //Загрузка по списку id (см. BatchLookup)
+    List<Faculty> findByIdIn(Collection<Long> ids);
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT f.id AS id, f.name AS name, f.color AS color FROM Faculty f ORDER BY f.id")
+    Stream<FacultyExportRow> streamExportRows();
+
+    @Query("SELECT new ru.hogwarts.school.dto.EntityVersion(f.version, f.lastModified) FROM Faculty f WHERE f.id = :id")
+    Optional<EntityVersion> findVersionById(@Param("id") long id);
 }
 
@@ -0,0 +1,11 @@
+package ru.hogwarts.school.repositories;
+
+public interface StudentExportRow {
+    Long getId();
+
+    String getName();
+
+    int getAge();
+
+    Long getFacultyId();
+}
@@ -1,24 +1,87 @@
 package ru.hogwarts.school.repositories;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.hogwarts.school.dto.EntityVersion;
+import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface StudentRepository extends JpaRepository<Student, Long>{
+    //Производные запросы по студентам кешируются (кеш запросов хранит id, сами студенты - в регионе student).
+    //Hibernate сбрасывает такие результаты при любом изменении таблицы student через save/persist/delete.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Collection<Student> findByAge(int age);
 
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Collection<Student> findByAgeBetween(int min, int max);
 
-    @Query(value = "SELECT COUNT(id) FROM student", nativeQuery = true)
-    Integer getNumberOfStudents();
-
-    @Query(value = "SELECT AVG(age) from student", nativeQuery = true)
-    Integer getAvgOfStudents();
-
+    //Нативные запросы не используют ни кеш второго уровня, ни кеш запросов и всегда читают БД.
+    //Нативный UPDATE/DELETE (@Modifying) должен перечислять изменяемые таблицы в подсказке
+    //HibernateHints.HINT_NATIVE_SPACES, иначе Hibernate очистит все регионы кеша.
+    //Изменения в обход приложения (вручную в БД) станут видны после истечения TTL региона.
     @Query(value = "SELECT * FROM student ORDER BY id DESC LIMIT 5", nativeQuery = true)
     List<StudentByName> getStudentByName();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
+    List<Student> findByFacultyId(Long facultyId);
+
+    //Загрузка по списку id (см. BatchLookup)
+    List<Student> findByIdIn(Collection<Long> ids);
+
+    //Факультет студента одним запросом, без загрузки самого студента
+    @Query("SELECT s.faculty FROM Student s WHERE s.id = :id")
+    Optional<Faculty> findFacultyByStudentId(@Param("id") long id);
+
+    //Первый запрос транзакции REPEATABLE READ, фиксирует её снимок для сверки статистики (InFlightChanges.snapshot)
+    @Query(value = "SELECT 1", nativeQuery = true)
+    int startSnapshot();
+
+    //Агрегаты считаются в БД, без загрузки сущностей.
+    //Число студентов и сумма возрастов - для сверки счётчиков StudentStatisticsService
+    @Query("SELECT COUNT(s) AS students, COALESCE(SUM(s.age), 0) AS ageSum FROM Student s")
+    StudentTotals getTotals();
+
+    @Query("SELECT s.faculty.id AS facultyId, s.age AS age, COUNT(s) AS students FROM Student s " +
+            "WHERE s.faculty IS NOT NULL GROUP BY s.faculty.id, s.age")
+    List<FacultyAgeCount> countByFacultyAndAge();
+
+    //Поиск по нормализованному имени: префикс использует индекс, подстрока - триграммный индекс в PostgreSQL.
+    //Шаблоны LIKE экранируются символом '!', отсутствующее условие передаётся как '%'.
+    @Query("SELECT s.id AS id, s.name AS name, s.age AS age FROM Student s " +
+            "WHERE s.nameNormalized LIKE :prefix ESCAPE '!' AND s.nameNormalized LIKE :contains ESCAPE '!' " +
+            "ORDER BY s.nameNormalized, s.id")
+    List<StudentSearchRow> searchByName(@Param("prefix") String prefixPattern,
+                                        @Param("contains") String containsPattern, Limit limit);
+
+    @Query("SELECT s.id AS id, s.name AS name, s.age AS age FROM Student s " +
+            "WHERE s.id > :afterId ORDER BY s.id DESC")
+    List<StudentSearchRow> findLatest(@Param("afterId") long afterId, Limit limit);
+
+    @Query("SELECT UPPER(s.name) FROM Student s WHERE s.name LIKE CONCAT(:prefix, '%') ORDER BY UPPER(s.name)")
+    List<String> findUpperCaseNamesStartingWith(@Param("prefix") String prefix);
+
+    //Курсор для обработки в Java: строки читаются порциями, память не растёт вместе с таблицей.
+    //Вызывать только внутри транзакции и закрывать поток.
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT s.name AS name, s.age AS age FROM Student s ORDER BY s.id")
+    Stream<StudentByName> streamAllBy();
+
+    @QueryHints({@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")})
+    @Query("SELECT s.id AS id, s.name AS name, s.age AS age, s.faculty.id AS facultyId FROM Student s ORDER BY s.id")
+    Stream<StudentExportRow> streamExportRows();
+
+    @Query("SELECT new ru.hogwarts.school.dto.EntityVersion(s.version, s.lastModified) FROM Student s WHERE s.id = :id")
+    Optional<EntityVersion> findVersionById(@Param("id") long id);
 }
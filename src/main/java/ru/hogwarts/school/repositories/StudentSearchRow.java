@@ -0,0 +1,9 @@
+package ru.hogwarts.school.repositories;
+
+public interface StudentSearchRow {
+    Long getId();
+
+    String getName();
+
+    int getAge();
+}
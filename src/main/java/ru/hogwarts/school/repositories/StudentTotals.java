@@ -0,0 +1,7 @@
+package ru.hogwarts.school.repositories;
+
+public interface StudentTotals {
+    long getStudents();
+
+    long getAgeSum();
+}
@@ -5,90 +5,222 @@ package ru.hogwarts.school.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
+import ru.hogwarts.school.dto.AvatarMetadata;
+import ru.hogwarts.school.dto.BatchResult;
+import ru.hogwarts.school.dto.CursorPage;
 import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.AvatarData;
 import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.AvatarMeta;
+import ru.hogwarts.school.repositories.AvatarDataRepository;
 import ru.hogwarts.school.repositories.AvatarRepository;
 import ru.hogwarts.school.repositories.StudentRepository;
 import java.io.*;
 import java.nio.file.Path;
 import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.util.List;
+import java.util.Optional;
 
 
-import static java.nio.file.StandardOpenOption.CREATE_NEW;
-
 @Service
 public class AvatarService {
-    @Value("${path.to.avatars.folder}")
-    private String avatarsDir;
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final AvatarRepository avatarRepository;
+    private final AvatarDataRepository avatarDataRepository;
     private final StudentRepository studentRepository;
+    private final AvatarStorage avatarStorage;
+    private final AvatarThumbnailService avatarThumbnailService;
+    private final TransactionTemplate transactionTemplate;
+    private final BatchLookup batchLookup;
     Logger logger = LoggerFactory.getLogger(AvatarService.class);
 
     @Autowired
-    public AvatarService(AvatarRepository avatarRepository, StudentRepository studentRepository) {
+    public AvatarService(AvatarRepository avatarRepository, AvatarDataRepository avatarDataRepository,
+                         StudentRepository studentRepository,
+                         AvatarStorage avatarStorage, AvatarThumbnailService avatarThumbnailService,
+                         PlatformTransactionManager transactionManager, BatchLookup batchLookup) {
         this.avatarRepository = avatarRepository;
+        this.avatarDataRepository = avatarDataRepository;
         this.studentRepository = studentRepository;
+        this.avatarStorage = avatarStorage;
+        this.avatarThumbnailService = avatarThumbnailService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchLookup = batchLookup;
     }
-    @Transactional
-    public void uploadAvatar(Long studentId, MultipartFile avatarFile) throws IOException {
-        Student student = studentRepository.getById(studentId);
-        Path filePath = Path.of(avatarsDir, student + "." + getExtensions(avatarFile.getOriginalFilename()));
-        Files.createDirectories(filePath.getParent());
-        Files.deleteIfExists(filePath);
-        try (
-                InputStream is = avatarFile.getInputStream();
-                OutputStream os = Files.newOutputStream(filePath, CREATE_NEW);
-                BufferedInputStream bis = new BufferedInputStream(is, 1024);
-                BufferedOutputStream bos = new BufferedOutputStream(os, 1024);
-        ) {
-            bis.transferTo(bos);
+
+    public enum UploadResult {
+        UPLOADED, STUDENT_NOT_FOUND, UNSUPPORTED_MEDIA_TYPE
+    }
+
+    //Файл записывается на диск вне транзакции; транзакция только обновляет метаданные аватара,
+    //поэтому соединение с БД не занято на время передачи файла.
+    //Тип берётся только по сигнатуре файла: Content-Type и расширение задаёт клиент, и HTML или SVG,
+    //отданный с ними как есть, выполнился бы в браузере. Файл неизвестного типа отклоняется.
+    public UploadResult uploadAvatar(Long studentId, MultipartFile avatarFile) throws IOException {
+        if (!studentRepository.existsById(studentId)) {
+            return UploadResult.STUDENT_NOT_FOUND;
+        }
+        AvatarStorage.StoredBlob blob;
+        try (InputStream is = avatarFile.getInputStream()) {
+            blob = avatarStorage.store(is);
         } catch (IOException e) {
-            logger.error("Ошибка при загрузке файла на диск по пути {} для студента id={}", filePath, studentId, e);
+            logger.error("Ошибка при загрузке файла на диск для студента id={}", studentId, e);
             throw e;
         }
+        if (blob.mediaType() == null) {
+            logger.debug("Avatar for student id={} is not a supported image, hash={}", studentId, blob.hash());
+            releaseIfUnreferenced(blob.hash());
+            return UploadResult.UNSUPPORTED_MEDIA_TYPE;
+        }
         try {
-            Avatar avatar = findAvatar(studentId);
-            avatar.setStudent(student);
-            avatar.setFilePath(filePath.toString());
-            avatar.setFileSize(avatarFile.getSize());
-            avatar.setMediaType(avatarFile.getContentType());
-            avatar.setData(avatarFile.getBytes());
-            logger.debug("Avatar ID before save: " + avatar.getId());
-            logger.debug("Saving avatar for student: " + student.getId());
-            logger.debug("Path: " + filePath);
-            logger.debug("Media type: " + avatarFile.getContentType());
-            logger.debug("Размер данных: " + avatarFile.getBytes().length);
-            logger.debug("Avatar id: " + avatar.getId());
-            avatarRepository.save(avatar);
-            logger.info("Was invoked method for upload Avatar");
-        } catch (Exception e) {
+            transactionTemplate.executeWithoutResult(status -> {
+                Student student = studentRepository.getReferenceById(studentId);
+                Avatar avatar = findAvatar(studentId);
+                String previousHash = avatar.getContentHash();
+                avatar.setStudent(student);
+                avatar.setContentHash(blob.hash());
+                avatar.setFilePath(null);
+                avatar.setFileSize(blob.size());
+                avatar.setMediaType(blob.mediaType());
+                logger.debug("Saving avatar id={} for student id={}, hash={}, size={}",
+                        avatar.getId(), studentId, blob.hash(), blob.size());
+                avatarRepository.save(avatar);
+                if (avatar.getId() != null) {
+                    avatarDataRepository.findById(avatar.getId())
+                            .filter(legacy -> legacy.getData() != null)
+                            .ifPresent(legacy -> legacy.setData(null));
+                }
+                afterCommit(blob.hash(), previousHash);
+            });
+            logger.debug("Was invoked method for upload Avatar");
+            return UploadResult.UPLOADED;
+        } catch (RuntimeException e) {
             logger.error("Ошибка при сохранении аватара студента id={}", studentId, e);
+            //Метаданные не сохранены - файл без ссылок удаляется; только что записанный удалит сборка
+            releaseIfUnreferenced(blob.hash());
             throw e;
         }
+    }
 
+    //Файл аватара: из контентного хранилища или, для старых записей, по сохранённому пути.
+    public Path getAvatarFile(Avatar avatar) {
+        if (avatar.getContentHash() != null) {
+            return avatarStorage.resolve(avatar.getContentHash());
+        }
+        return Path.of(avatar.getFilePath());
     }
-    @Transactional
-    private String getExtensions(String fileName) {
+
+    //Содержимое из БД загружается отдельно от кешируемых метаданных и только для старых записей.
+    public byte[] getAvatarData(Avatar avatar) throws IOException {
+        if (avatar.getContentHash() == null && avatar.getId() != null) {
+            byte[] data = avatarDataRepository.findById(avatar.getId()).map(AvatarData::getData).orElse(null);
+            if (data != null) {
+                return data;
+            }
+        }
+        return Files.readAllBytes(getAvatarFile(avatar));
+    }
+
+    //После коммита: строим миниатюры нового файла и освобождаем старый, если на него больше нет ссылок.
+    private void afterCommit(String hash, String previousHash) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                avatarThumbnailService.scheduleThumbnails(hash);
+                if (previousHash == null || previousHash.equals(hash)) {
+                    return;
+                }
+                releaseIfUnreferenced(previousHash);
+            }
+        });
+    }
+
+    private void releaseIfUnreferenced(String hash) {
+        try {
+            avatarStorage.releaseIfUnreferenced(hash, avatarRepository.countByContentHash(hash));
+        } catch (IOException e) {
+            logger.warn("Не удалось удалить неиспользуемый файл аватара {}", hash, e);
+        }
+    }
+
+    //Сборка файлов без ссылок, которые не удалось удалить сразу: они были записаны недавно
+    //или загрузка не дошла до сохранения метаданных.
+    @Scheduled(fixedDelayString = "${avatars.storage.gc-interval:PT1H}",
+            initialDelayString = "${avatars.storage.gc-interval:PT1H}")
+    public void collectUnreferencedBlobs() {
+        logger.debug("Was invoked method for collect Unreferenced Blobs");
+        try {
+            for (String hash : avatarStorage.findReleaseCandidates()) {
+                releaseIfUnreferenced(hash);
+            }
+        } catch (IOException e) {
+            logger.warn("Не удалось просмотреть хранилище аватаров", e);
+        }
+    }
+
+    public boolean isSupportedThumbnailSize(int size) {
+        return avatarThumbnailService.isSupportedSize(size);
+    }
+
+    //Миниатюра нужного размера; если её ещё нет - ставим построение в очередь и отдаём оригинал.
+    public AvatarThumbnailService.Thumbnail getThumbnail(Avatar avatar, int size) {
+        if (avatar.getContentHash() != null) {
+            Optional<AvatarThumbnailService.Thumbnail> thumbnail =
+                    avatarThumbnailService.findThumbnail(avatar.getContentHash(), size);
+            if (thumbnail.isPresent()) {
+                return thumbnail.get();
+            }
+            avatarThumbnailService.scheduleThumbnails(avatar.getContentHash());
+        }
+        return new AvatarThumbnailService.Thumbnail(getAvatarFile(avatar), avatar.getMediaType());
+    }
+    static String getExtensions(String fileName) {
         int dotIndex = fileName != null ? fileName.lastIndexOf(".") : -1;
-        logger.info("Was invoked method for get Extensions");
         return dotIndex != -1 ? fileName.substring(dotIndex + 1) : "unknown";
     }
-    @Transactional
+    @Transactional(readOnly = true)
     public Avatar findAvatar(long studentId) {
-        logger.info("Was invoked method for find Avatar");
+        logger.debug("Was invoked method for find Avatar");
         return avatarRepository.findByStudentId(studentId)
                 .orElse(new Avatar());
     }
-    @Transactional
+    @Transactional(readOnly = true)
     public Page<Avatar> findAll(Integer offset, Integer limit){
-        logger.info("Was invoked method for find All");
+        logger.debug("Was invoked method for find All");
         return avatarRepository.findAll(PageRequest.of(offset, limit));
     }
+
+    //Пагинация по курсору: следующая страница начинается после последнего id предыдущей.
+    @Transactional(readOnly = true)
+    public CursorPage<AvatarMetadata> findMetadata(long after, int limit) {
+        logger.debug("Was invoked method for find Metadata");
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        Slice<AvatarMeta> slice = avatarRepository.findMetaAfter(after, PageRequest.of(0, pageSize));
+        List<AvatarMetadata> content = slice.getContent().stream()
+                .map(AvatarMetadata::of)
+                .toList();
+        Long nextCursor = content.isEmpty() ? null : content.get(content.size() - 1).id();
+        return new CursorPage<>(content, nextCursor, slice.hasNext());
+    }
+
+    //Метаданные аватаров нескольких студентов одним запросом; missing - студенты без аватара
+    @Transactional(readOnly = true)
+    public BatchResult<AvatarMetadata> findMetadataByStudentIds(List<Long> studentIds) {
+        logger.debug("Was invoked method for find Metadata by student ids");
+        return batchLookup.load(studentIds,
+                ids -> avatarRepository.findMetaByStudentIds(ids).stream().map(AvatarMetadata::of).toList(),
+                AvatarMetadata::studentId);
+    }
 }
@@ -0,0 +1,281 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+//Контентно-адресуемое хранилище аватаров: файл называется SHA-256 своего содержимого
+//и лежит в каталоге ab/cd/<hash>, одинаковые файлы хранятся один раз.
+@Component
+public class AvatarStorage {
+    private static final int LOCK_STRIPES = 64;
+    //Сколько первых байт нужно для определения типа по сигнатуре (WEBP: RIFF....WEBP)
+    private static final int SNIFF_LENGTH = 12;
+    //Оригинал называется <hash>, миниатюра - <hash>-<name>
+    private static final Pattern BLOB_NAME = Pattern.compile("([0-9a-f]{64})(-.+)?");
+
+    private final Path root;
+    private final Path tmpDir;
+    private final Duration releaseGracePeriod;
+    private final ReentrantLock[] locks = new ReentrantLock[LOCK_STRIPES];
+    //Пул direct-буферов для загрузок: буфер берётся на время одной записи и возвращается обратно
+    private final BlockingQueue<ByteBuffer> buffers;
+    private final int bufferSize;
+    Logger logger = LoggerFactory.getLogger(AvatarStorage.class);
+
+    public AvatarStorage(@Value("${path.to.avatars.folder}") String avatarsDir,
+                         @Value("${avatars.storage.release-grace-period:PT10M}") Duration releaseGracePeriod,
+                         @Value("${avatars.storage.buffer-size:65536}") int bufferSize,
+                         @Value("${avatars.storage.buffer-pool-size:16}") int bufferPoolSize) {
+        this.root = Path.of(avatarsDir);
+        this.tmpDir = root.resolve("tmp");
+        this.releaseGracePeriod = releaseGracePeriod;
+        this.bufferSize = bufferSize;
+        this.buffers = new ArrayBlockingQueue<>(bufferPoolSize);
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    //mediaType - тип, определённый по сигнатуре содержимого, или null, если он не распознан.
+    public record StoredBlob(String hash, long size, String mediaType) {
+    }
+
+    //Один проход по содержимому: запись во временный файл, размер, хэш и первые байты для определения типа.
+    //Затем файл атомарно переносится на место.
+    public StoredBlob store(InputStream content) throws IOException {
+        Files.createDirectories(tmpDir);
+        Path tmp = Files.createTempFile(tmpDir, "upload-", ".part");
+        ByteBuffer buffer = acquireBuffer();
+        try {
+            MessageDigest digest = newDigest();
+            byte[] header = new byte[SNIFF_LENGTH];
+            long size = 0;
+            try (ReadableByteChannel in = Channels.newChannel(content);
+                 FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (in.read(buffer) != -1) {
+                    buffer.flip();
+                    if (size < SNIFF_LENGTH) {
+                        int length = (int) Math.min(SNIFF_LENGTH - size, buffer.remaining());
+                        buffer.duplicate().get(header, (int) size, length);
+                    }
+                    size += buffer.remaining();
+                    digest.update(buffer.duplicate());
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                    buffer.clear();
+                }
+            }
+            String hash = HexFormat.of().formatHex(digest.digest());
+            commit(tmp, hash);
+            return new StoredBlob(hash, size, sniffMediaType(header, (int) Math.min(size, SNIFF_LENGTH)));
+        } finally {
+            releaseBuffer(buffer);
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    //Тип изображения по сигнатуре (magic bytes); заголовку Content-Type клиента не доверяем.
+    static String sniffMediaType(byte[] header, int length) {
+        if (startsWith(header, length, 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A)) {
+            return "image/png";
+        }
+        if (startsWith(header, length, 0xFF, 0xD8, 0xFF)) {
+            return "image/jpeg";
+        }
+        if (startsWith(header, length, 'G', 'I', 'F', '8')) {
+            return "image/gif";
+        }
+        if (startsWith(header, length, 'R', 'I', 'F', 'F') && length >= SNIFF_LENGTH
+                && "WEBP".equals(new String(header, 8, 4, StandardCharsets.US_ASCII))) {
+            return "image/webp";
+        }
+        if (startsWith(header, length, 'B', 'M')) {
+            return "image/bmp";
+        }
+        return null;
+    }
+
+    private static boolean startsWith(byte[] header, int length, int... signature) {
+        if (length < signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if ((header[i] & 0xFF) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //Если пул пуст (все буферы заняты), выделяем новый; лишние буферы при возврате не сохраняются.
+    private ByteBuffer acquireBuffer() {
+        ByteBuffer buffer = buffers.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    private void releaseBuffer(ByteBuffer buffer) {
+        buffer.clear();
+        buffers.offer(buffer);
+    }
+
+    public Path resolve(String hash) {
+        return root.resolve(hash.substring(0, 2)).resolve(hash.substring(2, 4)).resolve(hash);
+    }
+
+    public boolean exists(String hash) {
+        return Files.exists(resolve(hash));
+    }
+
+    //Производные файлы (миниатюры) лежат рядом с оригиналом: <hash>-<name>.
+    public Path resolveDerivative(String hash, String name) {
+        return resolve(hash).resolveSibling(hash + "-" + name);
+    }
+
+    public interface DerivativeWriter {
+        void write(Path file) throws IOException;
+    }
+
+    //Записывает производный файл под блокировкой хэша, чтобы параллельный releaseIfUnreferenced
+    //не удалил оригинал между проверкой и записью и не оставил миниатюру без него.
+    //false - оригинала уже нет, и файл не записан.
+    public boolean writeDerivative(String hash, String name, DerivativeWriter writer) throws IOException {
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try {
+            if (!exists(hash)) {
+                return false;
+            }
+            Path target = resolveDerivative(hash, name);
+            if (Files.exists(target)) {
+                return true;
+            }
+            Path tmp = Files.createTempFile(target.getParent(), hash + ".", ".part");
+            try {
+                writer.write(tmp);
+                Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(tmp);
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Удаляет файл, на который больше не ссылается ни один аватар, вместе с его миниатюрами.
+    //Недавно записанные файлы не трогаем: их может прямо сейчас сохранять другая загрузка.
+    //Такие файлы позже удалит периодическая сборка (см. findReleaseCandidates).
+    public void releaseIfUnreferenced(String hash, long references) throws IOException {
+        if (references > 0) {
+            return;
+        }
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try {
+            Path target = resolve(hash);
+            if (Files.exists(target)) {
+                FileTime modified = Files.getLastModifiedTime(target);
+                if (modified.toInstant().isAfter(Instant.now().minus(releaseGracePeriod))) {
+                    logger.debug("Skip releasing recently stored avatar blob {}", hash);
+                    return;
+                }
+                Files.deleteIfExists(target);
+            }
+            //Миниатюры удаляются и тогда, когда оригинала уже нет
+            if (Files.isDirectory(target.getParent())) {
+                try (DirectoryStream<Path> derivatives = Files.newDirectoryStream(target.getParent(), hash + "-*")) {
+                    for (Path derivative : derivatives) {
+                        Files.deleteIfExists(derivative);
+                    }
+                }
+            }
+            logger.debug("Released avatar blob {}", hash);
+        } catch (NoSuchFileException e) {
+            logger.debug("Avatar blob {} is already released", hash);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    //Хэши файлов старше releaseGracePeriod - кандидаты для сборки: ссылки на них проверяет вызывающий.
+    //Миниатюры без оригинала тоже попадают сюда - по хэшу из имени.
+    public Set<String> findReleaseCandidates() throws IOException {
+        if (!Files.isDirectory(root)) {
+            return Set.of();
+        }
+        Instant threshold = Instant.now().minus(releaseGracePeriod);
+        Set<String> candidates = new TreeSet<>();
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.startsWith(tmpDir) || !Files.isRegularFile(file)) {
+                    continue;
+                }
+                Matcher matcher = BLOB_NAME.matcher(file.getFileName().toString());
+                if (matcher.matches() && Files.getLastModifiedTime(file).toInstant().isBefore(threshold)) {
+                    candidates.add(matcher.group(1));
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private void commit(Path tmp, String hash) throws IOException {
+        Path target = resolve(hash);
+        ReentrantLock lock = lockFor(hash);
+        lock.lock();
+        try {
+            if (Files.exists(target)) {
+                //Такой файл уже есть - обновляем время, чтобы его не удалили параллельно.
+                Files.setLastModifiedTime(target, FileTime.from(Instant.now()));
+                return;
+            }
+            Files.createDirectories(target.getParent());
+            Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock lockFor(String hash) {
+        return locks[Math.floorMod(hash.hashCode(), LOCK_STRIPES)];
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
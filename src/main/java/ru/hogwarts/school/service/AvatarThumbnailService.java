@@ -0,0 +1,241 @@
+package ru.hogwarts.school.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//Миниатюры аватаров фиксированных размеров. Строятся в фоне ограниченным пулом потоков
+//и кешируются на диске рядом с оригиналом (<hash>-<size>.png|jpg).
+//Размеры изображения проверяются до декодирования: сжатый PNG в несколько КБ может объявить 50000x50000 точек.
+//Изображения больше max-pixels пропускаются, остальные декодируются с прореживанием до размера,
+//достаточного для самой крупной миниатюры.
+//При spring.threads.virtual.enabled=true задачи идут в виртуальных потоках с теми же ограничениями:
+//не больше threads одновременно и не больше threads + queue-capacity принятых задач.
+@Service
+public class AvatarThumbnailService {
+    private final AvatarStorage avatarStorage;
+    private final List<Integer> sizes;
+    private final long maxPixels;
+    private final Executor executor;
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    Logger logger = LoggerFactory.getLogger(AvatarThumbnailService.class);
+
+    public AvatarThumbnailService(AvatarStorage avatarStorage,
+                                  @Value("${avatars.thumbnails.sizes:64,128,256}") List<Integer> sizes,
+                                  @Value("${avatars.thumbnails.threads:2}") int threads,
+                                  @Value("${avatars.thumbnails.queue-capacity:100}") int queueCapacity,
+                                  @Value("${avatars.thumbnails.max-pixels:25000000}") long maxPixels,
+                                  Environment environment) {
+        this.avatarStorage = avatarStorage;
+        this.sizes = List.copyOf(sizes);
+        this.maxPixels = maxPixels;
+        this.executor = Threading.VIRTUAL.isActive(environment)
+                ? new BoundedVirtualExecutor(threads, threads + queueCapacity)
+                : platformExecutor(threads, queueCapacity);
+    }
+
+    private static ExecutorService platformExecutor(int threads, int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                r -> {
+                    Thread thread = new Thread(r, "avatar-thumbnail-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    //Виртуальный поток на задачу. Построение миниатюры нагружает процессор, поэтому число одновременно
+    //работающих задач ограничено; ждущие задачи блокируют только свой виртуальный поток.
+    private static class BoundedVirtualExecutor implements Executor {
+        private final SimpleAsyncTaskExecutor delegate = new SimpleAsyncTaskExecutor("avatar-thumbnail-");
+        private final Semaphore running;
+        private final Semaphore accepted;
+
+        BoundedVirtualExecutor(int threads, int capacity) {
+            delegate.setVirtualThreads(true);
+            this.running = new Semaphore(threads);
+            this.accepted = new Semaphore(capacity);
+        }
+
+        @Override
+        public void execute(Runnable task) {
+            if (!accepted.tryAcquire()) {
+                throw new RejectedExecutionException("Thumbnail queue is full");
+            }
+            try {
+                delegate.execute(() -> {
+                    try {
+                        running.acquire();
+                        try {
+                            task.run();
+                        } finally {
+                            running.release();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } finally {
+                        accepted.release();
+                    }
+                });
+            } catch (RuntimeException e) {
+                accepted.release();
+                throw e;
+            }
+        }
+
+        void close() {
+            delegate.close();
+        }
+    }
+
+    public record Thumbnail(Path file, String mediaType) {
+    }
+
+    public boolean isSupportedSize(int size) {
+        return sizes.contains(size);
+    }
+
+    public Optional<Thumbnail> findThumbnail(String hash, int size) {
+        for (String format : List.of("jpg", "png")) {
+            Path file = avatarStorage.resolveDerivative(hash, size + "." + format);
+            if (Files.exists(file)) {
+                return Optional.of(new Thumbnail(file, "jpg".equals(format) ? "image/jpeg" : "image/png"));
+            }
+        }
+        return Optional.empty();
+    }
+
+    //Ставит построение миниатюр в очередь; при переполнении очереди задача отбрасывается
+    //и будет поставлена снова при следующем запросе миниатюры.
+    public void scheduleThumbnails(String hash) {
+        if (!pending.add(hash)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    createThumbnails(hash);
+                } finally {
+                    pending.remove(hash);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(hash);
+            logger.warn("Thumbnail queue is full, skip avatar {}", hash);
+        }
+    }
+
+    void createThumbnails(String hash) {
+        try {
+            BufferedImage original = read(hash);
+            if (original == null) {
+                return;
+            }
+            boolean alpha = original.getColorModel().hasAlpha();
+            String format = alpha ? "png" : "jpg";
+            for (int size : sizes) {
+                if (Files.exists(avatarStorage.resolveDerivative(hash, size + "." + format))) {
+                    continue;
+                }
+                BufferedImage thumbnail = scale(original, size, alpha);
+                if (!avatarStorage.writeDerivative(hash, size + "." + format,
+                        file -> ImageIO.write(thumbnail, format, file.toFile()))) {
+                    logger.debug("Avatar {} was released, thumbnails are not created", hash);
+                    return;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Не удалось построить миниатюры для аватара {}", hash, e);
+        }
+    }
+
+    //null - файла нет, это не изображение или оно больше maxPixels
+    private BufferedImage read(String hash) throws IOException {
+        Path file = avatarStorage.resolve(hash);
+        if (!Files.exists(file)) {
+            return null;
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = input != null ? ImageIO.getImageReaders(input) : Collections.emptyIterator();
+            if (!readers.hasNext()) {
+                logger.debug("Avatar {} is not a readable image, thumbnails are not created", hash);
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxPixels) {
+                    logger.warn("Аватар {} слишком большой для миниатюр: {}x{}", hash, width, height);
+                    return null;
+                }
+                //Прореживание оставляет не меньше двух точек исходника на точку самой крупной миниатюры
+                int largest = Collections.max(sizes);
+                int step = Math.max(1, Math.max(width, height) / (2 * largest));
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private static BufferedImage scale(BufferedImage original, int size, boolean alpha) {
+        double ratio = Math.min(1.0, (double) size / Math.max(original.getWidth(), original.getHeight()));
+        int width = Math.max(1, (int) Math.round(original.getWidth() * ratio));
+        int height = Math.max(1, (int) Math.round(original.getHeight() * ratio));
+        BufferedImage result = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = result.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(original, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor instanceof ExecutorService executorService) {
+            executorService.shutdownNow();
+        } else if (executor instanceof BoundedVirtualExecutor virtualExecutor) {
+            virtualExecutor.close();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ru.hogwarts.school.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.dto.BatchResult;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+//Загрузка по списку id за один запрос IN вместо запроса на каждый id.
+//Повторы убираются, список длиннее inChunkSize делится на несколько IN: число параметров
+//в одном запросе ограничено, а у каждой длины списка свой план запроса.
+@Component
+public class BatchLookup {
+    private final int maxIds;
+    private final int inChunkSize;
+
+    public BatchLookup(@Value("${batch.max-ids:100}") int maxIds,
+                       @Value("${batch.in-chunk-size:100}") int inChunkSize) {
+        this.maxIds = maxIds;
+        this.inChunkSize = Math.max(1, inChunkSize);
+    }
+
+    //Пустой список и список больше maxIds (без учёта повторов) контроллер отклоняет с ответом 400
+    public boolean accepts(Collection<Long> ids) {
+        long distinct = ids.stream().filter(Objects::nonNull).distinct().count();
+        return distinct > 0 && distinct <= maxIds;
+    }
+
+    public <T> BatchResult<T> load(Collection<Long> ids, Function<Collection<Long>, ? extends Collection<T>> query,
+                                   Function<T, Long> idOf) {
+        if (!accepts(ids)) {
+            throw new IllegalArgumentException("Expected 1.." + maxIds + " ids, got " + ids.size());
+        }
+        List<Long> requested = new ArrayList<>(new LinkedHashSet<>(ids));
+        requested.removeIf(Objects::isNull);
+        Map<Long, T> found = new HashMap<>();
+        for (int from = 0; from < requested.size(); from += inChunkSize) {
+            List<Long> chunk = requested.subList(from, Math.min(from + inChunkSize, requested.size()));
+            for (T item : query.apply(chunk)) {
+                found.put(idOf.apply(item), item);
+            }
+        }
+        List<T> items = new ArrayList<>(found.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : requested) {
+            T item = found.get(id);
+            if (item != null) {
+                items.add(item);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new BatchResult<>(items, missing);
+    }
+}
@@ -0,0 +1,141 @@
+package ru.hogwarts.school.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.hogwarts.school.repositories.FacultyExportRow;
+import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentExportRow;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.stream.Stream;
+
+//Выгрузка таблиц курсором с фиксированным fetch size: строка читается из БД и сразу пишется в ответ,
+//поэтому память не зависит от размера таблицы.
+@Service
+public class ExportService {
+    private final StudentRepository studentRepository;
+    private final FacultyRepository facultyRepository;
+    private final ObjectMapper objectMapper;
+    Logger logger = LoggerFactory.getLogger(ExportService.class);
+
+    public ExportService(StudentRepository studentRepository, FacultyRepository facultyRepository,
+                         ObjectMapper objectMapper) {
+        this.studentRepository = studentRepository;
+        this.facultyRepository = facultyRepository;
+        this.objectMapper = objectMapper;
+    }
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    @Transactional(readOnly = true)
+    public void exportStudents(OutputStream out, Format format) throws IOException {
+        logger.debug("Was invoked method for export Students");
+        try (Stream<StudentExportRow> rows = studentRepository.streamExportRows()) {
+            if (format == Format.CSV) {
+                Writer writer = csvWriter(out);
+                writer.write("id,name,age,facultyId\n");
+                rows.forEach(row -> writeCsv(writer, row.getId(), row.getName(), row.getAge(), row.getFacultyId()));
+                writer.flush();
+            } else {
+                JsonGenerator generator = jsonGenerator(out);
+                rows.forEach(row -> writeJson(generator, () -> {
+                    generator.writeNumberField("id", row.getId());
+                    generator.writeStringField("name", row.getName());
+                    generator.writeNumberField("age", row.getAge());
+                    if (row.getFacultyId() != null) {
+                        generator.writeNumberField("facultyId", row.getFacultyId());
+                    } else {
+                        generator.writeNullField("facultyId");
+                    }
+                }));
+                generator.flush();
+            }
+        }
+    }
+
+    @Transactional(readOnly = true)
+    public void exportFaculties(OutputStream out, Format format) throws IOException {
+        logger.debug("Was invoked method for export Faculties");
+        try (Stream<FacultyExportRow> rows = facultyRepository.streamExportRows()) {
+            if (format == Format.CSV) {
+                Writer writer = csvWriter(out);
+                writer.write("id,name,color\n");
+                rows.forEach(row -> writeCsv(writer, row.getId(), row.getName(), row.getColor()));
+                writer.flush();
+            } else {
+                JsonGenerator generator = jsonGenerator(out);
+                rows.forEach(row -> writeJson(generator, () -> {
+                    generator.writeNumberField("id", row.getId());
+                    generator.writeStringField("name", row.getName());
+                    generator.writeStringField("color", row.getColor());
+                }));
+                generator.flush();
+            }
+        }
+    }
+
+    private interface Fields {
+        void write() throws IOException;
+    }
+
+    private JsonGenerator jsonGenerator(OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        generator.setRootValueSeparator(null);
+        generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return generator;
+    }
+
+    private static void writeJson(JsonGenerator generator, Fields fields) {
+        try {
+            generator.writeStartObject();
+            fields.write();
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Writer csvWriter(OutputStream out) {
+        return new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+    }
+
+    private static void writeCsv(Writer writer, Object... values) {
+        try {
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writer.write(escapeCsv(values[i]));
+            }
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String escapeCsv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -1,61 +1,221 @@
 package ru.hogwarts.school.service;
 
-import jakarta.transaction.Transactional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ru.hogwarts.school.cache.BoundedTtlCache;
+import ru.hogwarts.school.cache.SingleFlight;
+import ru.hogwarts.school.datasource.ReadRouting;
+import ru.hogwarts.school.dto.BatchResult;
+import ru.hogwarts.school.dto.EntityVersion;
+import ru.hogwarts.school.event.FacultyChangedEvent;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.util.*;
+import java.util.function.Function;
+import java.util.function.Predicate;
 import java.util.stream.IntStream;
 
 
 
 @Service
 public class FacultyService {
-    
+    private static final String MAX_LENGTH_KEY = "max-length";
+
     private final FacultyRepository facultyRepository;
+    private final StudentRepository studentRepository;
+    private final BoundedTtlCache<Long, CachedFaculty> facultiesById;
+    private final BoundedTtlCache<FilterKey, List<CachedFaculty>> filterResults;
+    private final BoundedTtlCache<String, String> maxLengthName;
+    private final SingleFlight<Long, CachedFaculty> facultyLookups;
+    private final SingleFlight<FilterKey, List<CachedFaculty>> filterLookups;
+    private final ApplicationEventPublisher eventPublisher;
+    private final BatchLookup batchLookup;
     Logger logger = LoggerFactory.getLogger(FacultyService.class);
 
     @Autowired
-    public FacultyService(FacultyRepository facultyRepository) {
+    public FacultyService(FacultyRepository facultyRepository, StudentRepository studentRepository,
+                          ApplicationEventPublisher eventPublisher, BatchLookup batchLookup,
+                          @Value("${faculty.cache.max-size:1000}") int cacheMaxSize,
+                          @Value("${faculty.cache.ttl:PT10M}") Duration cacheTtl,
+                          @Value("${faculty.lookup.timeout:PT2S}") Duration lookupTimeout) {
         this.facultyRepository = facultyRepository;
+        this.studentRepository = studentRepository;
+        this.eventPublisher = eventPublisher;
+        this.batchLookup = batchLookup;
+        this.facultiesById = new BoundedTtlCache<>("faculty-by-id", cacheMaxSize, cacheTtl);
+        this.filterResults = new BoundedTtlCache<>("faculty-filter", cacheMaxSize, cacheTtl);
+        this.maxLengthName = new BoundedTtlCache<>("faculty-max-length", 1, cacheTtl);
+        this.facultyLookups = new SingleFlight<>("faculty-by-id", lookupTimeout);
+        this.filterLookups = new SingleFlight<>("faculty-filter", lookupTimeout);
     }
 
-    @Transactional
-    public Faculty addFaculty(Faculty newFaculty) {
-        logger.info("Was invoked method for add Faculty");
+    //Ключ фильтра: поиск идёт без учёта регистра, поэтому и ключ в нижнем регистре.
+    private record FilterKey(String name, String color) {
+        static FilterKey of(String name, String color) {
+            return new FilterKey(name != null ? name.toLowerCase(Locale.ROOT) : null,
+                    color != null ? color.toLowerCase(Locale.ROOT) : null);
+        }
+    }
 
-        return facultyRepository.save(newFaculty);
+    //Кеши хранят неизменяемые копии, каждый вызов получает свой экземпляр Faculty:
+    //общий экземпляр из кеша изменился бы у всех, кто его получил, если один из вызывающих его поменяет.
+    private record CachedFaculty(Long id, String name, String color, long version, Instant lastModified) {
+        static CachedFaculty of(Faculty faculty) {
+            return new CachedFaculty(faculty.getId(), faculty.getName(), faculty.getColor(),
+                    faculty.getVersion(), faculty.getLastModified());
+        }
+
+        Faculty toFaculty() {
+            Faculty faculty = new Faculty(id, color, name);
+            faculty.setVersion(version);
+            faculty.setLastModified(lastModified);
+            return faculty;
+        }
     }
 
     @Transactional
+    public Faculty addFaculty(Faculty newFaculty) {
+        logger.debug("Was invoked method for add Faculty");
+        Faculty saved = facultyRepository.save(newFaculty);
+        invalidate(saved.getId(), saved.getName(), saved.getColor());
+        eventPublisher.publishEvent(new FacultyChangedEvent(saved.getId()));
+        return saved;
+    }
+
+    //SUPPORTS: запросы, ждущие чужой загрузки, не открывают транзакцию и не занимают соединение;
+    //сам findById идёт в собственной транзакции только для чтения.
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public Faculty getFaculty(long id) {
-        logger.info("Was invoked method for get Faculty");
-        return facultyRepository.findById(id).get();
+        logger.debug("Was invoked method for get Faculty");
+        CachedFaculty faculty = getOrLoad(facultiesById, facultyLookups, id,
+                key -> facultyRepository.findById(key).map(CachedFaculty::of).orElse(null));
+        if (faculty == null) {
+            throw new NoSuchElementException("Faculty " + id + " not found");
+        }
+        return faculty.toFaculty();
+    }
+
+    //Факультеты из кеша отдаются без запроса, остальные загружаются одним IN.
+    //Загруженные так факультеты в кеш не попадают: его заполняет только getFaculty с проверкой поколения.
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
+    public BatchResult<Faculty> getFaculties(List<Long> ids) {
+        logger.debug("Was invoked method for get Faculties by ids");
+        return batchLookup.load(ids, this::findFaculties, Faculty::getId);
+    }
 
+    private List<Faculty> findFaculties(Collection<Long> ids) {
+        List<Faculty> faculties = new ArrayList<>(ids.size());
+        List<Long> misses = new ArrayList<>();
+        for (Long id : ids) {
+            CachedFaculty cached = facultiesById.get(id);
+            if (cached != null) {
+                faculties.add(cached.toFaculty());
+            } else {
+                misses.add(id);
+            }
+        }
+        if (!misses.isEmpty()) {
+            faculties.addAll(facultyRepository.findByIdIn(misses));
+        }
+        return faculties;
+    }
+
+    //Версия берётся из кеша факультетов, при промахе - запросом только версии, без загрузки сущности.
+    public Optional<EntityVersion> getFacultyVersion(long id) {
+        logger.debug("Was invoked method for get Faculty Version");
+        CachedFaculty cached = facultiesById.get(id);
+        if (cached != null) {
+            return Optional.of(new EntityVersion(cached.version(), cached.lastModified()));
+        }
+        return facultyRepository.findVersionById(id);
     }
 
     @Transactional
     public Faculty editFaculty(Faculty updateFaculty) {
-        logger.info("Was invoked method for edit Faculty");
+        return editFaculty(updateFaculty, null);
+    }
 
-        return facultyRepository.save(updateFaculty);
+    //expectedVersion - версия из If-Match; null - перезаписать без проверки.
+    @Transactional
+    public Faculty editFaculty(Faculty updateFaculty, Long expectedVersion) {
+        logger.debug("Was invoked method for edit Faculty");
+        if (updateFaculty.getId() == null) {
+            return null;
+        }
+        Optional<Faculty> current = facultyRepository.findById(updateFaculty.getId());
+        if (current.isEmpty()) {
+            return null;
+        }
+        long currentVersion = current.get().getVersion();
+        if (expectedVersion != null && expectedVersion != currentVersion) {
+            throw new OptimisticLockingFailureException("Faculty " + updateFaculty.getId()
+                    + " has version " + currentVersion + ", expected " + expectedVersion);
+        }
+        updateFaculty.setVersion(currentVersion);
+        String previousName = current.get().getName();
+        String previousColor = current.get().getColor();
+        Faculty saved = facultyRepository.save(updateFaculty);
+        invalidate(saved.getId(), previousName, previousColor);
+        invalidate(saved.getId(), saved.getName(), saved.getColor());
+        eventPublisher.publishEvent(new FacultyChangedEvent(saved.getId()));
+        return saved;
     }
 
     @Transactional
     public Faculty deleteFaculty(long id) {
         Faculty faculty = facultyRepository.findById(id).get();
         facultyRepository.deleteById(id);
-        logger.info("Was invoked method for delete Faculty");
+        invalidate(id, faculty.getName(), faculty.getColor());
+        eventPublisher.publishEvent(new FacultyChangedEvent(id));
+        logger.debug("Was invoked method for delete Faculty");
         return faculty;
     }
 
-    @Transactional
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public Collection<Faculty> filterFaculties(String name, String color) {
+        return getOrLoad(filterResults, filterLookups, FilterKey.of(name, color),
+                key -> findFaculties(name, color).stream().map(CachedFaculty::of).toList()).stream()
+                .map(CachedFaculty::toFaculty)
+                .toList();
+    }
+
+    //Одновременные промахи кеша по одному ключу объединяются в одну загрузку; в кеш её кладёт только ведущий,
+    //с поколением кеша на момент начала загрузки. Загрузка читает основную базу: отстающая реплика
+    //вернула бы в кеш значение до записи. Если транзакция уже читает реплику, результат не кешируется.
+    private static <K, V> V getOrLoad(BoundedTtlCache<K, V> cache, SingleFlight<K, V> lookups, K key,
+                                      Function<K, V> loader) {
+        V cached = cache.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        return lookups.execute(key, loadKey -> {
+            long generation = cache.generation();
+            V value;
+            try (ReadRouting.Scope ignored = ReadRouting.primaryReads()) {
+                value = loader.apply(loadKey);
+            }
+            if (!ReadRouting.isReplicaTransaction()) {
+                cache.put(loadKey, value, generation);
+            }
+            return value;
+        });
+    }
+
+    private Collection<Faculty> findFaculties(String name, String color) {
         if (name != null && color != null) {
 
             return facultyRepository.findByNameIgnoreCaseAndColorIgnoreCase(name, color);
@@ -66,18 +226,35 @@ public class FacultyService {
 
             return facultyRepository.findByColorIgnoreCase(color);
         } else {
-            logger.info("Was invoked method for filterFaculties");
+            logger.debug("Was invoked method for filterFaculties");
             return facultyRepository.findAll();
         }
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public List<Student> getFacultyStudents(long id) {
-        logger.info("Was invoked method for get Faculty Students");
-        return getFaculty(id).getStudents();
+        logger.debug("Was invoked method for get Faculty Students");
+        //Существование факультета проверяется через кеш, студенты читаются одним запросом по faculty_id.
+        getFaculty(id);
+        return studentRepository.findByFacultyId(id);
     }
 
     public String getFacultyWithMaxLength() {
+        String cached = maxLengthName.get(MAX_LENGTH_KEY);
+        if (cached != null) {
+            return cached;
+        }
+        long generation = maxLengthName.generation();
+        String name;
+        try (ReadRouting.Scope ignored = ReadRouting.primaryReads()) {
+            name = findFacultyWithMaxLength();
+        }
+        maxLengthName.put(MAX_LENGTH_KEY, name, generation);
+        return name;
+    }
+
+    //Без кеша; отдельно, чтобы бенчмарк мерил сам расчёт, а не попадание в кеш
+    String findFacultyWithMaxLength() {
         return facultyRepository.findAll().stream()
                 .map(Faculty::getName)
                 .max(Comparator.comparingInt(String::length))
@@ -90,6 +267,38 @@ public class FacultyService {
                 .sum();
     }
 
+    public List<BoundedTtlCache.Stats> getCacheStats() {
+        return List.of(facultiesById.stats(), filterResults.stats(), maxLengthName.stats());
+    }
 
+    public List<SingleFlight.Stats> getLookupStats() {
+        return List.of(facultyLookups.stats(), filterLookups.stats());
+    }
 
+    //Сбрасываем только записи (и начатые загрузки), которые может затронуть факультет с таким именем и цветом.
+    //Повторяем сброс после коммита, чтобы параллельное чтение не вернуло в кеш старые данные.
+    private void invalidate(Long id, String name, String color) {
+        FilterKey key = FilterKey.of(name, color);
+        Predicate<FilterKey> affected = cached ->
+                (cached.name() == null || Objects.equals(cached.name(), key.name()))
+                        && (cached.color() == null || Objects.equals(cached.color(), key.color()));
+        Runnable invalidation = () -> {
+            if (id != null) {
+                facultiesById.invalidate(id);
+                facultyLookups.forget(id);
+            }
+            filterResults.invalidateIf(affected);
+            filterLookups.forgetIf(affected);
+            maxLengthName.invalidateAll();
+        };
+        invalidation.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    invalidation.run();
+                }
+            });
+        }
+    }
 }
@@ -0,0 +1,274 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.hogwarts.school.datasource.ReadRouting;
+import ru.hogwarts.school.dto.FacultyStatistics;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.metrics.MetricsRegistry;
+import ru.hogwarts.school.repositories.FacultyAgeCount;
+import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+//Статистика по факультетам (число студентов, средний, минимальный и максимальный возраст).
+//Обновляется по событиям StudentChangedEvent после коммита; чтение отдаёт готовый снимок без запросов к student.
+//Периодическая сверка пересчитывает всё одним GROUP BY и сообщает о расхождениях. Изменения, применённые
+//после снимка сверки (InFlightChanges.snapshot), запрос не видел: они повторяются на пересчитанных данных.
+@Service
+public class FacultyStatisticsService {
+    private static final int SKIP_WARN_THRESHOLD = 3;
+
+    private final StudentRepository studentRepository;
+    private final FacultyRepository facultyRepository;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final InFlightChanges inFlightChanges;
+    private final AtomicInteger skippedInARow = new AtomicInteger();
+    private final LongAdder drift;
+    private final LongAdder reconciliations;
+    private volatile Map<Long, FacultyStatistics> snapshots = new ConcurrentHashMap<>();
+    //Изменяются только под lock
+    private Map<Long, Aggregate> aggregates = new HashMap<>();
+    private boolean initialized;
+    //Изменения после снимка сверки, null вне сверки
+    private List<StudentChangedEvent> replay;
+    Logger logger = LoggerFactory.getLogger(FacultyStatisticsService.class);
+
+    public FacultyStatisticsService(StudentRepository studentRepository, FacultyRepository facultyRepository,
+                                    MetricsRegistry metricsRegistry, PlatformTransactionManager transactionManager) {
+        this.studentRepository = studentRepository;
+        this.facultyRepository = facultyRepository;
+        this.inFlightChanges = new InFlightChanges(transactionManager);
+        this.drift = metricsRegistry.counter("faculty.stats.drift");
+        this.reconciliations = metricsRegistry.counter("faculty.stats.reconciliations");
+        metricsRegistry.gauge("faculty.stats.reconcile-skips", skippedInARow::get);
+    }
+
+    //Распределение возрастов факультета: нужно, чтобы min/max пересчитывались при удалении студента.
+    private static class Aggregate {
+        private final TreeMap<Integer, Long> ages = new TreeMap<>();
+        private long count;
+        private long ageSum;
+
+        void add(int age, long students) {
+            ages.merge(age, students, Long::sum);
+            count += students;
+            ageSum += age * students;
+        }
+
+        //Неизвестный возраст означает расхождение с БД - его исправит сверка.
+        void remove(int age) {
+            Long students = ages.get(age);
+            if (students == null) {
+                return;
+            }
+            if (students == 1) {
+                ages.remove(age);
+            } else {
+                ages.put(age, students - 1);
+            }
+            count--;
+            ageSum -= age;
+        }
+
+        boolean isEmpty() {
+            return count == 0;
+        }
+
+        FacultyStatistics toStatistics(long facultyId) {
+            if (isEmpty()) {
+                return FacultyStatistics.empty(facultyId);
+            }
+            return new FacultyStatistics(facultyId, count, (double) ageSum / count, ages.firstKey(), ages.lastKey());
+        }
+    }
+
+    public Optional<FacultyStatistics> getStatistics(long facultyId) {
+        FacultyStatistics statistics = snapshots.get(facultyId);
+        if (statistics != null) {
+            return Optional.of(statistics);
+        }
+        return facultyRepository.existsById(facultyId)
+                ? Optional.of(FacultyStatistics.empty(facultyId))
+                : Optional.empty();
+    }
+
+    public List<FacultyStatistics> getAllStatistics() {
+        return snapshots.values().stream()
+                .sorted(Comparator.comparingLong(FacultyStatistics::facultyId))
+                .toList();
+    }
+
+    //Вызывается при публикации события внутри транзакции, изменение применяется после её коммита
+    @EventListener
+    public void onStudentChanged(StudentChangedEvent event) {
+        StudentChangedEvent.Snapshot before = event.before();
+        StudentChangedEvent.Snapshot after = event.after();
+        if (before != null && after != null && before.age() == after.age()
+                && Objects.equals(before.facultyId(), after.facultyId())) {
+            return;
+        }
+        inFlightChanges.afterCommit(() -> apply(before, after));
+    }
+
+    private void apply(StudentChangedEvent.Snapshot before, StudentChangedEvent.Snapshot after) {
+        lock.lock();
+        try {
+            applyTo(aggregates, before, after);
+            if (replay != null) {
+                replay.add(new StudentChangedEvent(before, after));
+            }
+            if (before != null && before.facultyId() != null) {
+                publish(before.facultyId());
+            }
+            if (after != null && after.facultyId() != null) {
+                publish(after.facultyId());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void applyTo(Map<Long, Aggregate> target,
+                                StudentChangedEvent.Snapshot before, StudentChangedEvent.Snapshot after) {
+        if (before != null && before.facultyId() != null) {
+            Aggregate aggregate = target.get(before.facultyId());
+            if (aggregate != null) {
+                aggregate.remove(before.age());
+            }
+        }
+        if (after != null && after.facultyId() != null) {
+            target.computeIfAbsent(after.facultyId(), id -> new Aggregate()).add(after.age(), 1);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        rebuildWithRetries();
+    }
+
+    @Scheduled(fixedDelayString = "${faculty.stats.reconcile-interval:PT10M}",
+            initialDelayString = "${faculty.stats.reconcile-interval:PT10M}")
+    public void reconcile() {
+        rebuildWithRetries();
+    }
+
+    private void rebuildWithRetries() {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            if (rebuild()) {
+                skippedInARow.set(0);
+                return;
+            }
+        }
+        int skipped = skippedInARow.incrementAndGet();
+        if (skipped >= SKIP_WARN_THRESHOLD) {
+            logger.warn("Сверка статистики факультетов пропущена {} раз подряд: коммиты не удалось остановить", skipped);
+        } else {
+            logger.debug("Faculty statistics snapshot failed, retry on next run");
+        }
+    }
+
+    //false - снимок не получен (InFlightChanges.snapshot вернул null)
+    private boolean rebuild() {
+        try {
+            List<FacultyAgeCount> rows;
+            //Пересчёт по отстающей реплике потерял бы последние изменения
+            try (ReadRouting.Scope ignored = ReadRouting.primaryReads()) {
+                rows = inFlightChanges.snapshot(studentRepository::startSnapshot, this::startRecording,
+                        studentRepository::countByFacultyAndAge);
+            }
+            if (rows == null) {
+                return false;
+            }
+            Map<Long, Aggregate> rebuilt = new HashMap<>();
+            for (FacultyAgeCount row : rows) {
+                rebuilt.computeIfAbsent(row.getFacultyId(), id -> new Aggregate())
+                        .add(row.getAge(), row.getStudents());
+            }
+            lock.lock();
+            try {
+                for (StudentChangedEvent change : replay) {
+                    applyTo(rebuilt, change.before(), change.after());
+                }
+                rebuilt.values().removeIf(Aggregate::isEmpty);
+                Map<Long, FacultyStatistics> rebuiltSnapshots = new ConcurrentHashMap<>();
+                rebuilt.forEach((facultyId, aggregate) ->
+                        rebuiltSnapshots.put(facultyId, aggregate.toStatistics(facultyId)));
+                long drifted = initialized ? countDrift(snapshots, rebuiltSnapshots) : 0;
+                if (drifted > 0) {
+                    drift.add(drifted);
+                    logger.warn("Статистика факультетов разошлась с БД для {} факультетов, пересчитана", drifted);
+                }
+                aggregates = rebuilt;
+                snapshots = rebuiltSnapshots;
+                initialized = true;
+                reconciliations.increment();
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        } finally {
+            stopRecording();
+        }
+    }
+
+    private void startRecording() {
+        lock.lock();
+        try {
+            replay = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void stopRecording() {
+        lock.lock();
+        try {
+            replay = null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void publish(long facultyId) {
+        Aggregate aggregate = aggregates.get(facultyId);
+        if (aggregate == null || aggregate.isEmpty()) {
+            aggregates.remove(facultyId);
+            snapshots.remove(facultyId);
+        } else {
+            snapshots.put(facultyId, aggregate.toStatistics(facultyId));
+        }
+    }
+
+    private static long countDrift(Map<Long, FacultyStatistics> current, Map<Long, FacultyStatistics> rebuilt) {
+        long drifted = rebuilt.entrySet().stream()
+                .filter(entry -> !same(current.get(entry.getKey()), entry.getValue()))
+                .count();
+        drifted += current.keySet().stream().filter(id -> !rebuilt.containsKey(id)).count();
+        return drifted;
+    }
+
+    //Среднее сравнивается с допуском: оно получено делением и может отличаться в последнем знаке.
+    private static boolean same(FacultyStatistics a, FacultyStatistics b) {
+        return a != null && a.studentCount() == b.studentCount()
+                && Objects.equals(a.minAge(), b.minAge()) && Objects.equals(a.maxAge(), b.maxAge())
+                && Math.abs(a.averageAge() - b.averageAge()) < 1e-9;
+    }
+}
@@ -0,0 +1,127 @@
+package ru.hogwarts.school.service;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+//Изменения студентов «в пути»: событие опубликовано в транзакции, но ещё не применено к статистике.
+//Пересчёт по БД должен знать, какие изменения видел его запрос, иначе изменение, применённое после запроса,
+//учлось бы дважды или потерялось.
+//Транзакция с изменением держит commitGate (read lock) от beforeCommit до применения изменения.
+//snapshot на короткое время берёт write lock: новые коммиты ждут, уже закоммиченные изменения применены,
+//и в этот момент фиксируется снимок транзакции REPEATABLE READ. Запрос в ней видит ровно изменения,
+//применённые до onSnapshot; применённые после него запрос не видел, их нужно повторить на пересчитанных данных.
+//Коммит ждёт commitGate не дольше PAUSE_TIMEOUT_SECONDS (например, если снимку не хватило соединения из пула,
+//занятого ждущими коммитами) и проходит без него; снимок, во время которого это случилось, отбрасывается.
+class InFlightChanges {
+    private static final long PAUSE_TIMEOUT_SECONDS = 2;
+
+    private final ReentrantReadWriteLock commitGate = new ReentrantReadWriteLock();
+    private final TransactionTemplate snapshotTransaction;
+    //Коммиты, не дождавшиеся commitGate: всего и ещё не применённых
+    private final AtomicLong bypassed = new AtomicLong();
+    private final AtomicInteger bypassing = new AtomicInteger();
+
+    InFlightChanges(PlatformTransactionManager transactionManager) {
+        this.snapshotTransaction = new TransactionTemplate(transactionManager);
+        snapshotTransaction.setReadOnly(true);
+        snapshotTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+    }
+
+    //apply выполняется после коммита текущей транзакции, без транзакции - сразу.
+    void afterCommit(Runnable apply) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            //изменение уже записано без транзакции, мимо commitGate
+            bypassing.incrementAndGet();
+            bypassed.incrementAndGet();
+            try {
+                apply.run();
+            } finally {
+                exitCommit(false);
+            }
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private Boolean gateHeld;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                gateHeld = enterCommit();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        apply.run();
+                    }
+                } finally {
+                    if (gateHeld != null) {
+                        exitCommit(gateHeld);
+                    }
+                }
+            }
+        });
+    }
+
+    //false - commitGate не получен за PAUSE_TIMEOUT_SECONDS, коммит идёт без него
+    private boolean enterCommit() {
+        boolean held = false;
+        try {
+            held = commitGate.readLock().tryLock(PAUSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!held) {
+            bypassing.incrementAndGet();
+            bypassed.incrementAndGet();
+        }
+        return held;
+    }
+
+    private void exitCommit(boolean gateHeld) {
+        if (gateHeld) {
+            commitGate.readLock().unlock();
+        } else {
+            bypassing.decrementAndGet();
+        }
+    }
+
+    //Запрос пересчёта по снимку БД. pin - первый, лёгкий запрос транзакции: он фиксирует снимок
+    //при остановленных коммитах, после чего вызывается onSnapshot. Тяжёлый query идёт уже без остановки коммитов.
+    //null, если коммиты не удалось остановить: запрос не выполняется, изменения после onSnapshot повторять не нужно.
+    <T> T snapshot(Runnable pin, Runnable onSnapshot, Supplier<T> query) {
+        return snapshotTransaction.execute(status -> {
+            try {
+                if (!commitGate.writeLock().tryLock(PAUSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    return null;
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            try {
+                if (bypassing.get() > 0) {
+                    return null;
+                }
+                long bypassedBefore = bypassed.get();
+                pin.run();
+                onSnapshot.run();
+                if (bypassed.get() != bypassedBefore) {
+                    return null;
+                }
+            } finally {
+                commitGate.writeLock().unlock();
+            }
+            return query.get();
+        });
+    }
+}
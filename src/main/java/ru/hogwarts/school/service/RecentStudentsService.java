@@ -0,0 +1,146 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.hogwarts.school.cache.RingBuffer;
+import ru.hogwarts.school.datasource.ReadRouting;
+import ru.hogwarts.school.dto.RecentStudent;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.repositories.StudentSearchRow;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+//Лента последних студентов из кольцевого буфера в памяти. Буфер заполняется из БД при старте
+//и обновляется по StudentChangedEvent после коммита. В БД запрос уходит, только если буфер
+//не может ответить сам.
+//Студенты попадают в буфер в порядке коммита, а не id (id из пула, параллельные транзакции), поэтому
+//вытесненным может оказаться студент новее оставшихся. floor - наибольший id, который мог пропасть из буфера:
+//все студенты с большим id в нём есть, ответ из буфера точен только выше floor.
+//Изменения с других экземпляров и потерянные события не приходят вовсе - буфер периодически
+//заполняется заново (reseed-interval), изменения за время запроса к БД применяются к новому буферу повторно.
+@Service
+public class RecentStudentsService {
+    private final StudentRepository studentRepository;
+    private final int capacity;
+    private final int maxLimit;
+    private volatile Window window;
+    //Применение событий и замена окна; replay не null, пока идёт заполнение
+    private final Object lock = new Object();
+    private List<StudentChangedEvent> replay;
+    Logger logger = LoggerFactory.getLogger(RecentStudentsService.class);
+
+    public RecentStudentsService(StudentRepository studentRepository,
+                                 @Value("${student.recent.capacity:200}") int capacity,
+                                 @Value("${student.recent.max-limit:50}") int maxLimit) {
+        this.studentRepository = studentRepository;
+        this.capacity = capacity;
+        this.maxLimit = maxLimit;
+        this.window = new Window(capacity, Long.MAX_VALUE);
+    }
+
+    //Буфер вместе с его floor
+    private static class Window {
+        private final AtomicLong floor;
+        private final RingBuffer<RecentStudent> buffer;
+
+        Window(int capacity, long floor) {
+            this.floor = new AtomicLong(floor);
+            this.buffer = new RingBuffer<>(capacity, student -> this.floor.accumulateAndGet(student.id(), Math::max));
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${student.recent.reseed-interval:PT1M}",
+            initialDelayString = "${student.recent.reseed-interval:PT1M}")
+    public synchronized void seed() {
+        synchronized (lock) {
+            replay = new ArrayList<>();
+        }
+        Window fresh = null;
+        try {
+            fresh = load();
+        } finally {
+            synchronized (lock) {
+                if (fresh != null) {
+                    for (StudentChangedEvent event : replay) {
+                        apply(fresh.buffer, event);
+                    }
+                    window = fresh;
+                }
+                replay = null;
+            }
+        }
+    }
+
+    private Window load() {
+        List<StudentSearchRow> latest;
+        try (ReadRouting.Scope ignored = ReadRouting.primaryReads()) {
+            latest = studentRepository.findLatest(0, Limit.of(capacity));
+        }
+        //меньше ёмкости - в буфере все студенты; иначе пропали те, что старше самого старого загруженного
+        Window fresh = new Window(capacity, latest.size() < capacity ? 0 : latest.get(latest.size() - 1).getId());
+        for (int i = latest.size() - 1; i >= 0; i--) {
+            StudentSearchRow row = latest.get(i);
+            fresh.buffer.add(new RecentStudent(row.getId(), row.getName(), row.getAge()));
+        }
+        logger.debug("Recent students buffer seeded with {} students", latest.size());
+        return fresh;
+    }
+
+    //Последние студенты от новых к старым; since - id последнего уже полученного студента.
+    public List<RecentStudent> getRecent(int limit, Long since) {
+        int boundedLimit = Math.max(1, Math.min(limit, maxLimit));
+        long after = since != null ? since : 0;
+        Window current = window;
+        List<RecentStudent> result = current.buffer.snapshot().stream()
+                .filter(student -> student.id() > after)
+                .sorted(Comparator.comparingLong(RecentStudent::id).reversed())
+                .limit(boundedLimit)
+                .toList();
+        //floor читается после snapshot: вытеснение, которого не видно в snapshot, уже подняло floor
+        long floor = current.floor.get();
+        boolean exact = after >= floor
+                || result.size() == boundedLimit && result.get(result.size() - 1).id() > floor;
+        if (!exact) {
+            return studentRepository.findLatest(after, Limit.of(boundedLimit)).stream()
+                    .map(row -> new RecentStudent(row.getId(), row.getName(), row.getAge()))
+                    .toList();
+        }
+        return result;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        synchronized (lock) {
+            apply(window.buffer, event);
+            if (replay != null) {
+                replay.add(event);
+            }
+        }
+    }
+
+    //Повторное применение не дублирует студента: добавление заменяет уже загруженную из БД запись
+    private static void apply(RingBuffer<RecentStudent> buffer, StudentChangedEvent event) {
+        StudentChangedEvent.Snapshot before = event.before();
+        StudentChangedEvent.Snapshot after = event.after();
+        if (after == null) {
+            buffer.replaceIf(student -> student.id() == before.id(), student -> null);
+            return;
+        }
+        RecentStudent updated = new RecentStudent(after.id(), after.name(), after.age());
+        if (buffer.replaceIf(student -> student.id() == after.id(), student -> updated) == 0 && before == null) {
+            buffer.add(updated);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package ru.hogwarts.school.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.hogwarts.school.dto.ImportReport;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+//Массовая загрузка студентов из NDJSON или CSV (name,age,facultyId).
+//Тело читается построчно, вставка идёт пачками, каждая пачка - в своей транзакции:
+//ошибка в одной пачке попадает в отчёт и не останавливает загрузку.
+@Service
+public class StudentImportService {
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int batchSize;
+    Logger logger = LoggerFactory.getLogger(StudentImportService.class);
+
+    public StudentImportService(EntityManager entityManager, PlatformTransactionManager transactionManager,
+                                ObjectMapper objectMapper, ApplicationEventPublisher eventPublisher,
+                                @Value("${student.import.batch-size:500}") int batchSize) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.batchSize = batchSize;
+    }
+
+    public enum Format {
+        NDJSON, CSV
+    }
+
+    record Row(long line, String name, int age, Long facultyId) {
+    }
+
+    private record JsonRow(String name, Integer age, Long facultyId) {
+    }
+
+    public ImportReport importStudents(InputStream body, Format format) throws IOException {
+        logger.debug("Was invoked method for import Students");
+        Progress progress = new Progress();
+        List<Row> batch = new ArrayList<>(batchSize);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+            String text;
+            long line = 0;
+            while ((text = reader.readLine()) != null) {
+                line++;
+                if (text.isBlank() || (format == Format.CSV && line == 1 && isCsvHeader(text))) {
+                    continue;
+                }
+                try {
+                    batch.add(format == Format.CSV ? parseCsv(line, text) : parseJson(line, text));
+                } catch (IllegalArgumentException | IOException e) {
+                    progress.fail(line, line, 1, "Некорректная строка: " + e.getMessage());
+                    continue;
+                }
+                if (batch.size() >= batchSize) {
+                    insert(batch, progress);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            insert(batch, progress);
+        }
+        return progress.report();
+    }
+
+    private void insert(List<Row> batch, Progress progress) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (Row row : batch) {
+                    Student student = new Student();
+                    student.setName(row.name());
+                    student.setAge(row.age());
+                    if (row.facultyId() != null) {
+                        student.setFaculty(entityManager.getReference(Faculty.class, row.facultyId()));
+                    }
+                    entityManager.persist(student);
+                    //Слушатели получат события только после коммита пачки
+                    eventPublisher.publishEvent(StudentChangedEvent.created(student));
+                }
+                entityManager.flush();
+                entityManager.clear();
+            });
+            progress.imported += batch.size();
+        } catch (RuntimeException e) {
+            long first = batch.get(0).line();
+            long last = batch.get(batch.size() - 1).line();
+            logger.warn("Не удалось загрузить пачку студентов, строки {}-{}", first, last, e);
+            progress.fail(first, last, batch.size(), rootMessage(e));
+        }
+    }
+
+    private Row parseJson(long line, String text) throws IOException {
+        JsonRow row = objectMapper.readValue(text, JsonRow.class);
+        if (row.name() == null || row.age() == null) {
+            throw new IllegalArgumentException("нужны поля name и age");
+        }
+        return new Row(line, row.name(), row.age(), row.facultyId());
+    }
+
+    private Row parseCsv(long line, String text) {
+        List<String> fields = splitCsv(text);
+        if (fields.size() < 2 || fields.size() > 3) {
+            throw new IllegalArgumentException("ожидается name,age[,facultyId]");
+        }
+        Long facultyId = fields.size() == 3 && !fields.get(2).isBlank()
+                ? Long.valueOf(fields.get(2).trim())
+                : null;
+        return new Row(line, fields.get(0), Integer.parseInt(fields.get(1).trim()), facultyId);
+    }
+
+    private static boolean isCsvHeader(String text) {
+        return text.trim().toLowerCase(Locale.ROOT).startsWith("name,");
+    }
+
+    //Разбор строки CSV с поддержкой кавычек ("Иванов, Иван" и "" внутри кавычек).
+    static List<String> splitCsv(String text) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("незакрытая кавычка");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable cause = e;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+
+    private static class Progress {
+        private long imported;
+        private long failed;
+        private final List<ImportReport.BatchError> errors = new ArrayList<>();
+
+        void fail(long firstLine, long lastLine, int rows, String message) {
+            failed += rows;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add(new ImportReport.BatchError(firstLine, lastLine, message));
+            }
+        }
+
+        ImportReport report() {
+            return new ImportReport(imported, failed, List.copyOf(errors));
+        }
+    }
+}
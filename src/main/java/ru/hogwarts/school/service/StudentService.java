@@ -3,105 +3,202 @@ package ru.hogwarts.school.service;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 import org.springframework.web.bind.annotation.GetMapping;
+import ru.hogwarts.school.cache.SingleFlight;
+import ru.hogwarts.school.dto.BatchResult;
+import ru.hogwarts.school.dto.EntityVersion;
+import ru.hogwarts.school.event.StudentChangedEvent;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repositories.StudentByName;
 import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.repositories.StudentSearchRow;
 
+import java.time.Duration;
 import java.util.*;
 
 @Service
 public class StudentService {
     private final StudentRepository studentRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int searchMaxLimit;
+    private final SingleFlight<Long, Optional<Student>> studentLookups;
+    private final StudentStatisticsService studentStatisticsService;
+    private final BatchLookup batchLookup;
     Logger logger = LoggerFactory.getLogger(StudentService.class);
 
     @Autowired
-    public StudentService(StudentRepository studentRepository) {
+    public StudentService(StudentRepository studentRepository, ApplicationEventPublisher eventPublisher,
+                          StudentStatisticsService studentStatisticsService, BatchLookup batchLookup,
+                          @Value("${student.search.max-limit:100}") int searchMaxLimit,
+                          @Value("${student.lookup.timeout:PT2S}") Duration lookupTimeout) {
 
         this.studentRepository = studentRepository;
+        this.eventPublisher = eventPublisher;
+        this.studentStatisticsService = studentStatisticsService;
+        this.batchLookup = batchLookup;
+        this.searchMaxLimit = searchMaxLimit;
+        this.studentLookups = new SingleFlight<>("student-by-id", lookupTimeout);
     }
 
     @Transactional
     public Student addStudent(Student newStudent) {
-        logger.info("Was invoked method for add Student");
-        return studentRepository.save(newStudent);
+        logger.debug("Was invoked method for add Student");
+        Student saved = studentRepository.save(newStudent);
+        eventPublisher.publishEvent(StudentChangedEvent.created(saved));
+        return saved;
     }
 
-    @Transactional
+    //Одновременные запросы одного студента объединяются в один findById.
+    //SUPPORTS: ждущие не открывают транзакцию и не занимают соединение, findById идёт в своей транзакции.
+    @Transactional(readOnly = true, propagation = Propagation.SUPPORTS)
     public Student getStudent(long id) {
-        logger.info("Was invoked method for get Student");
-        return studentRepository.findById(id).get();
+        logger.debug("Was invoked method for get Student");
+        return studentLookups.execute(id, studentRepository::findById).get();
+    }
+
+    //Несколько студентов одним запросом IN вместо отдельного getStudent на каждого
+    @Transactional(readOnly = true)
+    public BatchResult<Student> getStudents(List<Long> ids) {
+        logger.debug("Was invoked method for get Students by ids");
+        return batchLookup.load(ids, studentRepository::findByIdIn, Student::getId);
+    }
+
+    public List<SingleFlight.Stats> getLookupStats() {
+        return List.of(studentLookups.stats());
+    }
+
+    //После коммита изменения новые чтения не должны присоединяться к загрузке, начатой до него
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onStudentChanged(StudentChangedEvent event) {
+        StudentChangedEvent.Snapshot snapshot = event.after() != null ? event.after() : event.before();
+        studentLookups.forget(snapshot.id());
+    }
+
+    //Версия без загрузки сущности: ответ 304 на If-None-Match.
+    @Transactional(readOnly = true)
+    public Optional<EntityVersion> getStudentVersion(long id) {
+        logger.debug("Was invoked method for get Student Version");
+        return studentRepository.findVersionById(id);
     }
 
     @Transactional
     public Student editStudent(Student updateStudent) {
-        logger.info("Was invoked method for edit Student");
-        return studentRepository.save(updateStudent);
+        return editStudent(updateStudent, null);
+    }
+
+    //expectedVersion - версия из If-Match; null - перезаписать без проверки.
+    //При несовпадении версии (в том числе из-за параллельного изменения) бросается OptimisticLockingFailureException.
+    @Transactional
+    public Student editStudent(Student updateStudent, Long expectedVersion) {
+        logger.debug("Was invoked method for edit Student");
+        if (updateStudent.getId() == null) {
+            return null;
+        }
+        Optional<Student> current = studentRepository.findById(updateStudent.getId());
+        if (current.isEmpty()) {
+            return null;
+        }
+        long currentVersion = current.get().getVersion();
+        if (expectedVersion != null && expectedVersion != currentVersion) {
+            throw new OptimisticLockingFailureException("Student " + updateStudent.getId()
+                    + " has version " + currentVersion + ", expected " + expectedVersion);
+        }
+        updateStudent.setVersion(currentVersion);
+        StudentChangedEvent.Snapshot before = StudentChangedEvent.Snapshot.of(current.get());
+        Student saved = studentRepository.save(updateStudent);
+        eventPublisher.publishEvent(StudentChangedEvent.updated(before, saved));
+        return saved;
     }
 
     @Transactional
     public Student deleteStudent(long id) {
         Student student = studentRepository.findById(id).get();
+        StudentChangedEvent.Snapshot before = StudentChangedEvent.Snapshot.of(student);
         studentRepository.deleteById(id);
-        logger.info("Was invoked method for delete Student");
+        eventPublisher.publishEvent(StudentChangedEvent.deleted(before));
+        logger.debug("Was invoked method for delete Student");
         return student;
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public Collection<Student> filterForAge(int years) {
-        logger.info("Was invoked method for filter For Age");
+        logger.debug("Was invoked method for filter For Age");
         return studentRepository.findByAge(years);
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public Collection<Student> findStudentsByAgeBetween(int min, int max) {
-        logger.info("Was invoked method for find Students By Age Between");
+        logger.debug("Was invoked method for find Students By Age Between");
         return studentRepository.findByAgeBetween(min, max);
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public Faculty getStudentFaculty(long id) {
-        logger.info("Was invoked method for get Student Faculty");
-        return getStudent(id).getFaculty();
+        logger.debug("Was invoked method for get Student Faculty");
+        return studentRepository.findFacultyByStudentId(id).orElseGet(() -> {
+            //Второй запрос только когда факультета нет: отличаем студента без факультета от несуществующего
+            if (!studentRepository.existsById(id)) {
+                throw new NoSuchElementException("Student " + id + " not found");
+            }
+            return null;
+        });
     }
 
-    @Transactional
+    //Число и средний возраст - из счётчиков StudentStatisticsService, без запроса к БД
     public Integer getNumberOfStudents() {
-        logger.info("Was invoked method for get Number Of Students");
-        return studentRepository.getNumberOfStudents();
+        logger.debug("Was invoked method for get Number Of Students");
+        return studentStatisticsService.getNumberOfStudents();
     }
 
-    @Transactional
     public Integer getAvgOfStudents() {
-        logger.info("Was invoked method for get Avg Of Students");
-        return studentRepository.getAvgOfStudents();
+        logger.debug("Was invoked method for get Avg Of Students");
+        return studentStatisticsService.getAvgOfStudents();
     }
 
-    @Transactional
+    @Transactional(readOnly = true)
     public List<StudentByName> getStudentByName() {
-        logger.info("Was invoked method for get Student By Name");
+        logger.debug("Was invoked method for get Student By Name");
         return studentRepository.getStudentByName();
     }
 
+    //Поиск без учёта регистра по началу имени и/или подстроке; результат ограничен и отсортирован по имени.
+    @Transactional(readOnly = true)
+    public List<StudentSearchRow> searchByName(String prefix, String contains, int limit) {
+        logger.debug("Was invoked method for search Students by name");
+        int boundedLimit = Math.max(1, Math.min(limit, searchMaxLimit));
+        return studentRepository.searchByName(likePattern(prefix, false), likePattern(contains, true),
+                Limit.of(boundedLimit));
+    }
+
+    private static String likePattern(String value, boolean contains) {
+        String normalized = Student.normalizeName(value);
+        if (normalized == null || normalized.isEmpty()) {
+            return "%";
+        }
+        String escaped = normalized.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+        return (contains ? "%" : "") + escaped + "%";
+    }
+
+    @Transactional(readOnly = true)
     public Collection<String> getWithNameOnA() {
-        return studentRepository.findAll().stream()
-                .map(Student::getName)
-                .filter(name -> name.startsWith("А"))
-                .map(String::toUpperCase)
-                .sorted()
-                .toList();
+        logger.debug("Was invoked method for get With Name On A");
+        return studentRepository.findUpperCaseNamesStartingWith("А");
     }
 
     public Double getAVGAge() {
-        return studentRepository.findAll().stream()
-                .mapToInt(Student::getAge)
-                .average()
-                .orElse(0);
+        logger.debug("Was invoked method for get AVG Age");
+        return studentStatisticsService.getAverageAge();
     }
 
 
@@ -0,0 +1,203 @@
+package ru.hogwarts.school.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.hogwarts.school.cache.ResponseCache;
+import ru.hogwarts.school.datasource.ReadRouting;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.metrics.MetricsRegistry;
+import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.repositories.StudentTotals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+//Число студентов и их средний возраст без запросов к student.
+//Счётчики меняются по StudentChangedEvent после коммита; чтение складывает ячейки LongAdder.
+//Периодическая сверка сравнивает их с COUNT/SUM в БД и исправляет расхождение. Изменения, применённые
+//после снимка сверки (InFlightChanges.snapshot), запрос не видел: их сумма добавляется к результату запроса.
+//Кешированные ответы /student/getNumber и др. сбрасываются после каждого изменения счётчиков,
+//иначе запрос между сбросом кеша по событию и обновлением счётчиков закешировал бы старое значение.
+@Service
+public class StudentStatisticsService {
+    private static final int SKIP_WARN_THRESHOLD = 3;
+
+    private final StudentRepository studentRepository;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder ageSum = new LongAdder();
+    private final InFlightChanges inFlightChanges;
+    //События обновляют и чтение читает счётчики параллельно (read lock),
+    //сверка на время проверки и исправления их останавливает (write lock)
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    //Изменения после снимка сверки; recording меняется только под write lock
+    private final LongAdder replayCount = new LongAdder();
+    private final LongAdder replayAgeSum = new LongAdder();
+    private boolean recording;
+    private final AtomicInteger skippedInARow = new AtomicInteger();
+    private final ResponseCache responseCache;
+    private final LongAdder drift;
+    private final LongAdder reconciliations;
+    private volatile boolean initialized;
+    Logger logger = LoggerFactory.getLogger(StudentStatisticsService.class);
+
+    public StudentStatisticsService(StudentRepository studentRepository, MetricsRegistry metricsRegistry,
+                                    ResponseCache responseCache, PlatformTransactionManager transactionManager) {
+        this.studentRepository = studentRepository;
+        this.responseCache = responseCache;
+        this.inFlightChanges = new InFlightChanges(transactionManager);
+        this.drift = metricsRegistry.counter("student.stats.drift");
+        this.reconciliations = metricsRegistry.counter("student.stats.reconciliations");
+        metricsRegistry.gauge("student.stats.reconcile-skips", skippedInARow::get);
+    }
+
+    //До первой сверки счётчики ещё не заполнены - отвечает БД
+    public int getNumberOfStudents() {
+        if (!initialized) {
+            return Math.toIntExact(studentRepository.getTotals().getStudents());
+        }
+        return count.intValue();
+    }
+
+    //Целая часть среднего, как у прежнего AVG(age) по целому столбцу; null, если студентов нет.
+    public Integer getAvgOfStudents() {
+        long[] totals = totals();
+        return totals[0] > 0 ? (int) (totals[1] / totals[0]) : null;
+    }
+
+    public double getAverageAge() {
+        long[] totals = totals();
+        return totals[0] > 0 ? (double) totals[1] / totals[0] : 0;
+    }
+
+    private long[] totals() {
+        if (!initialized) {
+            StudentTotals totals = studentRepository.getTotals();
+            return new long[]{totals.getStudents(), totals.getAgeSum()};
+        }
+        lock.readLock().lock();
+        try {
+            return new long[]{count.sum(), ageSum.sum()};
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    //Вызывается при публикации события внутри транзакции, изменение применяется после её коммита
+    @EventListener
+    public void onStudentChanged(StudentChangedEvent event) {
+        StudentChangedEvent.Snapshot before = event.before();
+        StudentChangedEvent.Snapshot after = event.after();
+        if (before != null && after != null && before.age() == after.age()) {
+            return;
+        }
+        inFlightChanges.afterCommit(() -> apply(before, after));
+    }
+
+    private void apply(StudentChangedEvent.Snapshot before, StudentChangedEvent.Snapshot after) {
+        long countChange = (after != null ? 1 : 0) - (before != null ? 1 : 0);
+        long ageSumChange = (after != null ? after.age() : 0) - (before != null ? before.age() : 0);
+        lock.readLock().lock();
+        try {
+            count.add(countChange);
+            ageSum.add(ageSumChange);
+            if (recording) {
+                replayCount.add(countChange);
+                replayAgeSum.add(ageSumChange);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        responseCache.invalidate(ResponseCache.Group.STUDENTS);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        rebuildWithRetries();
+    }
+
+    @Scheduled(fixedDelayString = "${student.stats.reconcile-interval:PT10M}",
+            initialDelayString = "${student.stats.reconcile-interval:PT10M}")
+    public void reconcile() {
+        rebuildWithRetries();
+    }
+
+    private void rebuildWithRetries() {
+        for (int attempt = 0; attempt < 3; attempt++) {
+            if (rebuild()) {
+                skippedInARow.set(0);
+                return;
+            }
+        }
+        int skipped = skippedInARow.incrementAndGet();
+        if (skipped >= SKIP_WARN_THRESHOLD) {
+            logger.warn("Сверка статистики студентов пропущена {} раз подряд: коммиты не удалось остановить", skipped);
+        } else {
+            logger.debug("Student statistics snapshot failed, retry on next run");
+        }
+    }
+
+    //false - снимок не получен (InFlightChanges.snapshot вернул null)
+    private boolean rebuild() {
+        StudentTotals totals;
+        boolean corrected;
+        try {
+            //Сверка с отстающей репликой «исправила» бы счётчики на старые значения
+            try (ReadRouting.Scope ignored = ReadRouting.primaryReads()) {
+                totals = inFlightChanges.snapshot(studentRepository::startSnapshot, this::startRecording,
+                        studentRepository::getTotals);
+            }
+            if (totals == null) {
+                return false;
+            }
+            lock.writeLock().lock();
+            try {
+                long countDelta = totals.getStudents() + replayCount.sum() - count.sum();
+                long ageSumDelta = totals.getAgeSum() + replayAgeSum.sum() - ageSum.sum();
+                if (initialized && (countDelta != 0 || ageSumDelta != 0)) {
+                    drift.increment();
+                    logger.warn("Статистика студентов разошлась с БД: число {}, сумма возрастов {}, исправлена",
+                            countDelta, ageSumDelta);
+                }
+                count.add(countDelta);
+                ageSum.add(ageSumDelta);
+                corrected = !initialized || countDelta != 0 || ageSumDelta != 0;
+                initialized = true;
+                reconciliations.increment();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            stopRecording();
+        }
+        if (corrected) {
+            responseCache.invalidate(ResponseCache.Group.STUDENTS);
+        }
+        return true;
+    }
+
+    private void startRecording() {
+        lock.writeLock().lock();
+        try {
+            replayCount.reset();
+            replayAgeSum.reset();
+            recording = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void stopRecording() {
+        lock.writeLock().lock();
+        try {
+            recording = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package ru.hogwarts.school.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.event.EventListener;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+//Тренировочный запуск для архива CDS (профиль Maven fast-startup): после готовности приложения
+//отправляет запросы прогрева и завершает JVM. При ленивой инициализации классы бинов, MVC и Hibernate
+//загружаются только первыми запросами, а без прогрева они не попали бы в архив.
+//Включается свойством startup.training-run=true, в обычном запуске ничего не делает.
+public class CdsTrainingRun {
+    private final boolean enabled;
+    private final List<String> paths;
+    Logger logger = LoggerFactory.getLogger(CdsTrainingRun.class);
+
+    public CdsTrainingRun(boolean enabled, List<String> paths) {
+        this.enabled = enabled;
+        this.paths = paths;
+    }
+
+    @EventListener
+    public void onReady(ApplicationReadyEvent event) {
+        if (!enabled) {
+            return;
+        }
+        ConfigurableApplicationContext context = event.getApplicationContext();
+        String port = context.getEnvironment().getProperty("local.server.port");
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        for (String path : paths) {
+            try {
+                HttpResponse<Void> response = client.send(
+                        HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).build(),
+                        HttpResponse.BodyHandlers.discarding());
+                logger.info("Прогрев {}: {}", path, response.statusCode());
+            } catch (IOException e) {
+                logger.warn("Прогрев {} не удался", path, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        System.exit(SpringApplication.exit(context));
+    }
+}
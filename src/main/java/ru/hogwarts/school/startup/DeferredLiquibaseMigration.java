@@ -0,0 +1,91 @@
+package ru.hogwarts.school.startup;
+
+import liquibase.Contexts;
+import liquibase.LabelExpression;
+import liquibase.Liquibase;
+import liquibase.changelog.ChangeSet;
+import liquibase.database.Database;
+import liquibase.database.DatabaseFactory;
+import liquibase.database.jvm.JdbcConnection;
+import liquibase.integration.spring.SpringResourceAccessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.metrics.MetricsRegistry;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.List;
+
+//Liquibase вне критического пути старта (профиль fast-startup, spring.liquibase.enabled=false).
+//Новые экземпляры при масштабировании поднимаются на уже обновлённой схеме, поэтому после готовности
+//приложения в фоне только проверяется, что неприменённых изменений нет (mode=validate),
+//либо они применяются (mode=update - только для совместимых со старым кодом изменений).
+//Ресурсы открываются так же, как у SpringLiquibase, чтобы пути в DATABASECHANGELOG совпадали.
+@Component
+@ConditionalOnProperty(name = "liquibase.deferred.mode")
+public class DeferredLiquibaseMigration {
+    public enum Mode {
+        VALIDATE, UPDATE
+    }
+
+    private final DataSource dataSource;
+    private final ResourceLoader resourceLoader;
+    private final String changeLog;
+    private final Mode mode;
+    private volatile int pendingChangeSets = -1;
+    Logger logger = LoggerFactory.getLogger(DeferredLiquibaseMigration.class);
+
+    public DeferredLiquibaseMigration(DataSource dataSource, ResourceLoader resourceLoader, MetricsRegistry registry,
+                                      @Value("${spring.liquibase.change-log}") String changeLog,
+                                      @Value("${liquibase.deferred.mode}") Mode mode) {
+        this.dataSource = dataSource;
+        this.resourceLoader = resourceLoader;
+        this.changeLog = changeLog;
+        this.mode = mode;
+        registry.gauge("liquibase.pending.changesets", () -> pendingChangeSets);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        Thread thread = new Thread(this::run, "deferred-liquibase");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    //-1 - проверка ещё не завершилась или не удалась
+    public int getPendingChangeSets() {
+        return pendingChangeSets;
+    }
+
+    void run() {
+        try (Connection connection = dataSource.getConnection()) {
+            Database database = DatabaseFactory.getInstance()
+                    .findCorrectDatabaseImplementation(new JdbcConnection(connection));
+            try (Liquibase liquibase = new Liquibase(changeLog, new SpringResourceAccessor(resourceLoader), database)) {
+                List<ChangeSet> pending = liquibase.listUnrunChangeSets(new Contexts(), new LabelExpression());
+                if (pending.isEmpty()) {
+                    pendingChangeSets = 0;
+                    logger.debug("Liquibase: schema is up to date");
+                    return;
+                }
+                if (mode == Mode.UPDATE) {
+                    logger.info("Liquibase: применяется {} изменений схемы в фоне", pending.size());
+                    liquibase.update(new Contexts(), new LabelExpression());
+                    pendingChangeSets = 0;
+                } else {
+                    pendingChangeSets = pending.size();
+                    logger.error("Liquibase: схема отстаёт от кода, не применено изменений: {} (первое - {})",
+                            pending.size(), pending.get(0).getId());
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Liquibase: отложенная проверка схемы не удалась", e);
+        }
+    }
+}
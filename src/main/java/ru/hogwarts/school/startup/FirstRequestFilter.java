@@ -0,0 +1,30 @@
+package ru.hogwarts.school.startup;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+//Сообщает StartupTimeRecorder о завершении первого запроса; после него только пропускает запросы дальше.
+public class FirstRequestFilter extends OncePerRequestFilter {
+    private final StartupTimeRecorder recorder;
+
+    public FirstRequestFilter(StartupTimeRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            if (!recorder.isFirstRequestServed()) {
+                recorder.onRequestServed(request.getRequestURI());
+            }
+        }
+    }
+}
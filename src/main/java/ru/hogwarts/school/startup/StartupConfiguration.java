@@ -0,0 +1,42 @@
+package ru.hogwarts.school.startup;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.Ordered;
+
+import java.util.List;
+
+//Замер времени старта и исключения из ленивой инициализации (профиль fast-startup).
+//EntityManagerFactory остаётся неленивой: Hibernate строится в фоне (bootstrap-mode=deferred)
+//параллельно с остальным контекстом, а не во время первого запроса.
+@Configuration
+@Profile("fast-startup")
+public class StartupConfiguration {
+
+    @Bean
+    public FilterRegistrationBean<FirstRequestFilter> firstRequestFilter(StartupTimeRecorder recorder) {
+        FilterRegistrationBean<FirstRequestFilter> registration =
+                new FilterRegistrationBean<>(new FirstRequestFilter(recorder));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+
+    //static: фильтр читается пост-процессором фабрики бинов до создания остальных бинов конфигурации
+    @Bean
+    public static LazyInitializationExcludeFilter eagerStartupBeans() {
+        return LazyInitializationExcludeFilter.forBeanTypes(EntityManagerFactory.class, StartupTimeRecorder.class,
+                DeferredLiquibaseMigration.class);
+    }
+
+    //Бин есть всегда, а включается свойством: при сборке AOT набор бинов фиксируется без него
+    @Bean
+    public CdsTrainingRun cdsTrainingRun(@Value("${startup.training-run:false}") boolean enabled,
+                                         @Value("${startup.training-run.paths}") List<String> paths) {
+        return new CdsTrainingRun(enabled, paths);
+    }
+}
@@ -0,0 +1,58 @@
+package ru.hogwarts.school.startup;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import ru.hogwarts.school.metrics.MetricsRegistry;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//Время старта экземпляра от запуска JVM: контекст поднят (started), приложение готово (ready)
+//и обслужен первый запрос (first_request). Именно последнее решает, как быстро новый экземпляр
+//при масштабировании начинает принимать трафик. Значения - в метрике application.startup.time (секунды).
+@Component
+public class StartupTimeRecorder {
+    private final MetricsRegistry registry;
+    private final AtomicBoolean firstRequestServed = new AtomicBoolean();
+    Logger logger = LoggerFactory.getLogger(StartupTimeRecorder.class);
+
+    public StartupTimeRecorder(MetricsRegistry registry) {
+        this.registry = registry;
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void onStarted() {
+        record("started", uptimeMillis());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        record("ready", uptimeMillis());
+    }
+
+    //Фиксируется только первый завершённый запрос, остальные вызовы ничего не делают
+    public void onRequestServed(String uri) {
+        if (!firstRequestServed.compareAndSet(false, true)) {
+            return;
+        }
+        long millis = uptimeMillis();
+        record("first_request", millis);
+        logger.info("Первый запрос ({}) обслужен через {} мс после запуска JVM", uri, millis);
+    }
+
+    public boolean isFirstRequestServed() {
+        return firstRequestServed.get();
+    }
+
+    private void record(String phase, long millis) {
+        registry.gauge("application.startup.time", () -> millis / 1000.0, "phase", phase);
+    }
+
+    private static long uptimeMillis() {
+        return ManagementFactory.getRuntimeMXBean().getUptime();
+    }
+}
@@ -0,0 +1,4 @@
+--liquibase formatted sql
+--changeset mitrom:3-avatar-content-hash
+ALTER TABLE avatar ADD COLUMN content_hash VARCHAR(64);
+CREATE INDEX avatar_content_hash_index ON avatar (content_hash);
@@ -0,0 +1,6 @@
+--liquibase formatted sql
+--changeset mitrom:8-student-faculty-version
+ALTER TABLE student ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE student ADD COLUMN last_modified TIMESTAMP WITH TIME ZONE;
+ALTER TABLE faculties ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE faculties ADD COLUMN last_modified TIMESTAMP WITH TIME ZONE;
@@ -0,0 +1,14 @@
+--liquibase formatted sql
+--changeset mitrom:4-student-name-normalized
+ALTER TABLE student ADD COLUMN name_normalized VARCHAR(255);
+UPDATE student SET name_normalized = UPPER(TRIM(name));
+
+--changeset mitrom:5-student-name-normalized-prefix-index dbms:postgresql
+CREATE INDEX student_name_normalized_prefix_index ON student (name_normalized varchar_pattern_ops);
+
+--changeset mitrom:6-student-name-normalized-trigram-index dbms:postgresql
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX student_name_normalized_trgm_index ON student USING gin (name_normalized gin_trgm_ops);
+
+--changeset mitrom:7-student-name-normalized-index dbms:h2
+CREATE INDEX student_name_normalized_index ON student (name_normalized);
@@ -0,0 +1,57 @@
+package ru.hogwarts.school.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class BoundedTtlCacheTest {
+    private final AtomicLong now = new AtomicLong();
+    private final BoundedTtlCache<String, String> cache =
+            new BoundedTtlCache<>("test", 2, Duration.ofSeconds(10), now::get);
+
+    @Test
+    public void testHitsAndMisses() {
+        assertThat(cache.get("a", key -> "A")).isEqualTo("A");
+        assertThat(cache.get("a", key -> "other")).isEqualTo("A");
+
+        BoundedTtlCache.Stats stats = cache.stats();
+        assertThat(stats.hits()).isEqualTo(1);
+        assertThat(stats.misses()).isEqualTo(1);
+        assertThat(stats.hitRatio()).isEqualTo(0.5);
+    }
+
+    @Test
+    public void testSizeEviction() {
+        cache.put("a", "A");
+        cache.put("b", "B");
+        cache.get("a");
+        cache.put("c", "C");
+
+        assertThat(cache.get("b")).isNull();
+        assertThat(cache.get("a")).isEqualTo("A");
+        assertThat(cache.stats().evictions()).isEqualTo(1);
+    }
+
+    @Test
+    public void testExpiration() {
+        cache.put("a", "A");
+        now.addAndGet(Duration.ofSeconds(11).toNanos());
+
+        assertThat(cache.get("a")).isNull();
+        assertThat(cache.stats().evictions()).isEqualTo(1);
+    }
+
+    @Test
+    public void testInvalidationDuringLoadIsNotCached() {
+        String value = cache.get("a", key -> {
+            cache.invalidate("a");
+            return "stale";
+        });
+
+        assertThat(value).isEqualTo("stale");
+        assertThat(cache.get("a")).isNull();
+    }
+}
@@ -0,0 +1,89 @@
+package ru.hogwarts.school.cache;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.hogwarts.school.event.FacultyChangedEvent;
+import ru.hogwarts.school.event.StudentChangedEvent;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ResponseCacheFilterTest {
+    private static final String BODY = "[" + "{\"id\":1,\"name\":\"Гриффиндор\",\"color\":\"красный\"},".repeat(20) + "{}]";
+
+    private final ResponseCache cache = new ResponseCache(100, Duration.ofMinutes(10), 256);
+    private final ResponseCacheFilter filter = new ResponseCacheFilter(cache,
+            Map.of("/faculty/filter", ResponseCache.Group.FACULTIES));
+    private final AtomicInteger invocations = new AtomicInteger();
+    private final HttpServlet controller = new HttpServlet() {
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            invocations.incrementAndGet();
+            response.setContentType("application/json");
+            response.getOutputStream().write(BODY.getBytes("UTF-8"));
+        }
+    };
+
+    @Test
+    public void testCachedVariantsAndInvalidation() throws Exception {
+        MockHttpServletResponse first = perform("gzip, deflate, br", "color", "красный");
+        assertThat(first.getHeader(HttpHeaders.CONTENT_ENCODING)).isEqualTo("gzip");
+        assertThat(gunzip(first.getContentAsByteArray())).isEqualTo(BODY);
+
+        MockHttpServletResponse identity = perform(null, "color", "красный");
+        assertThat(identity.getHeader(HttpHeaders.CONTENT_ENCODING)).isNull();
+        assertThat(identity.getContentAsString()).isEqualTo(BODY);
+        assertThat(identity.getHeader(HttpHeaders.VARY)).isEqualTo(HttpHeaders.ACCEPT_ENCODING);
+        assertThat(invocations).hasValue(1);
+
+        perform("gzip", "color", "зелёный");
+        assertThat(invocations).hasValue(2);
+
+        //изменения студентов не затрагивают ответы о факультетах
+        cache.onStudentChanged(new StudentChangedEvent(null, null));
+        perform("gzip", "color", "красный");
+        assertThat(invocations).hasValue(2);
+
+        cache.onFacultyChanged(new FacultyChangedEvent(1));
+        perform("gzip", "color", "красный");
+        assertThat(invocations).hasValue(3);
+    }
+
+    @Test
+    public void testNegotiate() {
+        assertThat(ResponseCacheFilter.negotiate("deflate, gzip;q=0.5")).isEqualTo("deflate");
+        assertThat(ResponseCacheFilter.negotiate("gzip;q=0, *")).isEqualTo("deflate");
+        assertThat(ResponseCacheFilter.negotiate("br")).isNull();
+        assertThat(ResponseCacheFilter.negotiate("*;q=0.1")).isEqualTo("gzip");
+    }
+
+    private MockHttpServletResponse perform(String acceptEncoding, String param, String value) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/faculty/filter");
+        request.setParameter(param, value);
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain(controller));
+        assertThat(response.getStatus()).isEqualTo(200);
+        return response;
+    }
+
+    private static String gunzip(byte[] content) throws IOException {
+        try (GZIPInputStream is = new GZIPInputStream(new ByteArrayInputStream(content))) {
+            return new String(is.readAllBytes(), "UTF-8");
+        }
+    }
+}
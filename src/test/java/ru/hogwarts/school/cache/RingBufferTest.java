@@ -0,0 +1,50 @@
+package ru.hogwarts.school.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RingBufferTest {
+    private final RingBuffer<Integer> buffer = new RingBuffer<>(3);
+
+    @Test
+    public void testNewestFirstAndOverwrite() {
+        for (int i = 1; i <= 5; i++) {
+            buffer.add(i);
+        }
+
+        assertThat(buffer.snapshot()).containsExactly(5, 4, 3);
+        assertThat(buffer.isComplete()).isFalse();
+    }
+
+    @Test
+    public void testReplaceAndTombstone() {
+        buffer.add(1);
+        buffer.add(2);
+        assertThat(buffer.isComplete()).isTrue();
+
+        assertThat(buffer.replaceIf(value -> value == 1, value -> 10)).isEqualTo(1);
+        assertThat(buffer.replaceIf(value -> value == 2, value -> null)).isEqualTo(1);
+
+        assertThat(buffer.snapshot()).containsExactly(10);
+        assertThat(buffer.isComplete()).isFalse();
+    }
+
+    @Test
+    public void testEvictedValuesAreReported() {
+        List<Integer> evicted = new ArrayList<>();
+        RingBuffer<Integer> reporting = new RingBuffer<>(2, evicted::add);
+        reporting.add(1);
+        reporting.add(2);
+        reporting.replaceIf(value -> value == 2, value -> null);
+        reporting.add(3);
+        reporting.add(4);
+
+        //удалённый элемент не вытесняется повторно
+        assertThat(evicted).containsExactly(1);
+        assertThat(reporting.snapshot()).containsExactly(4, 3);
+    }
+}
@@ -0,0 +1,112 @@
+package ru.hogwarts.school.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SingleFlightTest {
+    private static final int THREADS = 8;
+
+    private final SingleFlight<Long, String> lookups = new SingleFlight<>("test", Duration.ofSeconds(5));
+    private final AtomicInteger loads = new AtomicInteger();
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private String slowLoad(long key) {
+        loads.incrementAndGet();
+        try {
+            release.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return "студент " + key;
+    }
+
+    @Test
+    public void testConcurrentCallsShareOneLoad() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(() -> lookups.execute(1L, this::slowLoad)));
+            }
+            awaitFollowers(THREADS - 1);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("студент 1");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(loads.get()).isEqualTo(1);
+        SingleFlight.Stats stats = lookups.stats();
+        assertThat(stats.leaders()).isEqualTo(1);
+        assertThat(stats.followers()).isEqualTo(THREADS - 1);
+        assertThat(stats.inFlight()).isZero();
+        assertThat(stats.collapseRatio()).isEqualTo((double) (THREADS - 1) / THREADS);
+
+        //Завершённая загрузка не кешируется
+        release.countDown();
+        lookups.execute(1L, this::slowLoad);
+        assertThat(loads.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void testFollowerTimeoutAndSharedFailure() throws Exception {
+        SingleFlight<Long, String> shortWait = new SingleFlight<>("short", Duration.ofMillis(50));
+        CountDownLatch started = new CountDownLatch(1);
+        Thread leader = new Thread(() -> {
+            try {
+                shortWait.execute(1L, key -> {
+                    started.countDown();
+                    slowLoad(key);
+                    throw new IllegalStateException("БД недоступна");
+                });
+            } catch (IllegalStateException ignored) {
+            }
+        });
+        leader.start();
+        started.await(5, TimeUnit.SECONDS);
+
+        assertThatThrownBy(() -> shortWait.execute(1L, this::slowLoad)).isInstanceOf(QueryTimeoutException.class);
+        assertThat(shortWait.stats().timeouts()).isEqualTo(1);
+
+        release.countDown();
+        leader.join(5_000);
+        assertThat(shortWait.stats().inFlight()).isZero();
+    }
+
+    @Test
+    public void testForgetStartsNewLoad() throws Exception {
+        Thread leader = new Thread(() -> lookups.execute(1L, this::slowLoad));
+        leader.start();
+        while (lookups.stats().inFlight() == 0) {
+            Thread.sleep(1);
+        }
+        lookups.forget(1L);
+
+        assertThat(lookups.execute(1L, key -> "после изменения")).isEqualTo("после изменения");
+        release.countDown();
+        leader.join(5_000);
+        assertThat(lookups.stats().leaders()).isEqualTo(2);
+    }
+
+    private void awaitFollowers(int followers) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (lookups.stats().followers() < followers && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package ru.hogwarts.school.controller;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import ru.hogwarts.school.service.ExportService;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ExportController.class)
+public class ExportControllerWebMvcTest {
+    @Autowired
+    private MockMvc mockMvc;
+    @MockBean
+    private ExportService exportService;
+
+    @Test
+    public void testExportStudentsCsv() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            invocation.getArgument(0, OutputStream.class).write("id,name,age,facultyId\n1,Гарри,11,\n"
+                    .getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(exportService).exportStudents(Mockito.any(), Mockito.eq(ExportService.Format.CSV));
+
+        MvcResult result = mockMvc.perform(get("/student/export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        assertThat(result.getRequest().getAsyncContext().getTimeout()).isEqualTo(Duration.ofMinutes(30).toMillis());
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "text/csv;charset=UTF-8"))
+                .andExpect(content().string("id,name,age,facultyId\n1,Гарри,11,\n"));
+    }
+
+    @Test
+    public void testExportFacultiesGzip() throws Exception {
+        Mockito.doAnswer(invocation -> {
+            invocation.getArgument(0, OutputStream.class).write("{\"id\":1}\n".getBytes(StandardCharsets.UTF_8));
+            return null;
+        }).when(exportService).exportFaculties(Mockito.any(), Mockito.eq(ExportService.Format.NDJSON));
+
+        MvcResult result = mockMvc.perform(get("/faculty/export").param("gzip", "true"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        byte[] body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse().getContentAsByteArray();
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            assertThat(new String(in.readAllBytes(), StandardCharsets.UTF_8)).isEqualTo("{\"id\":1}\n");
+        }
+    }
+
+    @Test
+    public void testUnknownFormat() throws Exception {
+        mockMvc.perform(get("/student/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+}
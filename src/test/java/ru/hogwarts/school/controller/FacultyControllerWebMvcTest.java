@@ -8,12 +8,16 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.service.BatchLookup;
 import ru.hogwarts.school.service.FacultyService;
+import ru.hogwarts.school.service.FacultyStatisticsService;
 
 import java.util.List;
 import java.util.Optional;
@@ -23,11 +27,16 @@ import static org.springframework.test.web.servlet.request.MockMvcRequestBuilder
         import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(FacultyController.class)
+@Import(BatchLookup.class)
 public class FacultyControllerWebMvcTest {
     @Autowired
     private MockMvc mockMvc;
     @MockBean
     private FacultyRepository facultyRepository;
+    @MockBean
+    private StudentRepository studentRepository;
+    @MockBean
+    private FacultyStatisticsService facultyStatisticsService;
     @SpyBean
     private FacultyService facultyService;
     private final ObjectMapper objectMapper = new ObjectMapper();
@@ -73,7 +82,7 @@ public class FacultyControllerWebMvcTest {
     public void testEditFaculty_success() throws Exception {
         Faculty request = new Faculty(1L, "красный", "Тестер1");
         Faculty updated = new Faculty(1L, "синий", "Тестер2");
-        Mockito.when(facultyService.editFaculty(Mockito.any(Faculty.class))).thenReturn(updated);
+        Mockito.doReturn(updated).when(facultyService).editFaculty(Mockito.any(Faculty.class));
 
         mockMvc.perform(put("/faculty")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -85,7 +94,7 @@ public class FacultyControllerWebMvcTest {
     @Test
     public void testEditFaculty_notFound() throws Exception {
         Faculty request = new Faculty(1L, "красный", "Никто");
-        Mockito.when(facultyService.editFaculty(Mockito.any(Faculty.class))).thenReturn(null);
+        Mockito.doReturn(null).when(facultyService).editFaculty(Mockito.any(Faculty.class));
         mockMvc.perform(put("/faculty")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
@@ -164,4 +173,15 @@ public class FacultyControllerWebMvcTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.length()").value(2));
     }
+
+    @Test
+    void testGetFacultiesByIds() throws Exception {
+        when(facultyRepository.findByIdIn(List.of(2L, 5L)))
+                .thenReturn(List.of(new Faculty(2L, "зелёный", "Слизерин")));
+
+        mockMvc.perform(get("/faculty").param("ids", "2,5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].name").value("Слизерин"))
+                .andExpect(jsonPath("$.missing[0]").value(5));
+    }
 }
@@ -0,0 +1,290 @@
+package ru.hogwarts.school.controller;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.RequestBuilder;
+import ru.hogwarts.school.cache.ResponseCache;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+import ru.hogwarts.school.repositories.AvatarRepository;
+import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.service.RecentStudentsService;
+import ru.hogwarts.school.service.StudentStatisticsService;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+//Число SQL-запросов на один HTTP-запрос не должно зависеть от объёма данных:
+//на факультете 2000 студентов, у части из них есть аватары.
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("h2")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class StatementCountTest {
+    private static final int STUDENTS = 2_000;
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private FacultyRepository facultyRepository;
+    @Autowired
+    private StudentRepository studentRepository;
+    @Autowired
+    private AvatarRepository avatarRepository;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private RecentStudentsService recentStudentsService;
+    @Autowired
+    private StudentStatisticsService studentStatisticsService;
+    @Autowired
+    private ResponseCache responseCache;
+
+    private Statistics statistics;
+    private Faculty faculty;
+    private Student student;
+    private List<Student> students;
+
+    @BeforeAll
+    public void seed() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        faculty = facultyRepository.save(new Faculty(null, "красный", "Гриффиндор"));
+        students = new ArrayList<>(STUDENTS);
+        for (int i = 0; i < STUDENTS; i++) {
+            Student newStudent = new Student(11 + i % 7, "Студент " + i, null);
+            newStudent.setFaculty(faculty);
+            students.add(newStudent);
+        }
+        students = studentRepository.saveAll(students);
+        student = students.get(0);
+        for (int i = 0; i < 20; i++) {
+            Avatar avatar = new Avatar();
+            avatar.setStudent(students.get(i));
+            avatar.setMediaType("image/png");
+            avatar.setFileSize(100);
+            avatarRepository.save(avatar);
+        }
+        //данные сохранены в обход сервиса, поэтому буфер заполняется заново
+        recentStudentsService.seed();
+        studentStatisticsService.reconcile();
+    }
+
+    //Кеши Hibernate и ответов сбрасываются, чтобы число запросов не зависело от порядка тестов
+    @BeforeEach
+    public void resetCaches() {
+        entityManagerFactory.unwrap(SessionFactory.class).getCache().evictAllRegions();
+        responseCache.invalidate(ResponseCache.Group.STUDENTS);
+        responseCache.invalidate(ResponseCache.Group.FACULTIES);
+        statistics.clear();
+    }
+
+    //Факультет мог попасть в кеш FacultyService в другом тесте, поэтому он загружается заранее:
+    //остаётся один запрос студентов по faculty_id
+    @Test
+    public void testGetFacultyStudents() throws Exception {
+        mockMvc.perform(get("/faculty/" + faculty.getId())).andExpect(status().isOk());
+        assertStatements(1, get("/faculty/students/" + faculty.getId()));
+    }
+
+    @Test
+    public void testGetStudentFaculty() throws Exception {
+        mockMvc.perform(get("/student/faculty/" + student.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.name").value("Гриффиндор"));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testGetStudent() throws Exception {
+        assertStatements(1, get("/student/" + student.getId()));
+    }
+
+    //Свой факультет, которого ещё нет в кешах
+    @Test
+    public void testGetFaculty() throws Exception {
+        Faculty slytherin = facultyRepository.save(new Faculty(null, "зелёный", "Слизерин"));
+        try {
+            entityManagerFactory.getCache().evict(Faculty.class);
+            assertStatements(1, get("/faculty/" + slytherin.getId()));
+            assertStatements(0, get("/faculty/" + slytherin.getId()));
+        } finally {
+            facultyRepository.deleteById(slytherin.getId());
+        }
+    }
+
+    @Test
+    public void testFilterStudents() throws Exception {
+        assertStatements(1, get("/student/filter").param("years", "12"));
+        assertStatements(1, get("/student/between").param("min", "11").param("max", "17"));
+    }
+
+    @Test
+    public void testFilterFaculties() throws Exception {
+        assertStatements(1, get("/faculty/filter").param("color", "КРАСНЫЙ"));
+    }
+
+    @Test
+    public void testFacultyStatistics() throws Exception {
+        assertStatements(1, get("/faculty/" + faculty.getId() + "/stats"));
+        assertStatements(0, get("/faculty/stats"));
+    }
+
+    @Test
+    public void testStudentTotals() throws Exception {
+        mockMvc.perform(get("/student/getNumber"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$").value(STUDENTS));
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        assertStatements(0, get("/student/getAvg"));
+        assertStatements(0, get("/student/average-age"));
+    }
+
+    @Test
+    public void testBatchLookups() throws Exception {
+        long missingId = -1;
+        mockMvc.perform(get("/student").param("ids", students.get(5).getId() + "," + missingId + "," + student.getId()))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].name").value("Студент 5"))
+                .andExpect(jsonPath("$.items[1].name").value("Студент 0"))
+                .andExpect(jsonPath("$.missing[0]").value(missingId));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertStatements(1, get("/faculty").param("ids", faculty.getId() + "," + missingId));
+        //аватары есть только у первых 20 студентов
+        Long withoutAvatar = students.get(20).getId();
+        statistics.clear();
+        mockMvc.perform(get("/avatar/meta").param("studentIds", students.get(19).getId() + "," + withoutAvatar))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].studentId").value(students.get(19).getId()))
+                .andExpect(jsonPath("$.missing[0]").value(withoutAvatar));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void testSearchStudents() throws Exception {
+        mockMvc.perform(get("/student/search").param("prefix", " студент 1").param("limit", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(5))
+                .andExpect(jsonPath("$[0].name").value("Студент 1"))
+                .andExpect(jsonPath("$[1].name").value("Студент 10"));
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertStatements(1, get("/student/search").param("contains", "НТ 199"));
+    }
+
+    @Test
+    public void testRecentStudents() throws Exception {
+        mockMvc.perform(get("/student/recent").param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(3))
+                .andExpect(jsonPath("$[0].name").value("Студент " + (STUDENTS - 1)));
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+        //курсор старше содержимого буфера, но более новых студентов в буфере хватает на limit - ответ из буфера
+        assertStatements(0, get("/student/recent").param("limit", "50").param("since", String.valueOf(student.getId())));
+    }
+
+    @Test
+    public void testConditionalGet() throws Exception {
+        String studentETag = mockMvc.perform(get("/student/" + student.getId()))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        statistics.clear();
+        mockMvc.perform(get("/student/" + student.getId()).header(HttpHeaders.IF_NONE_MATCH, studentETag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, studentETag));
+        //только запрос версии, без загрузки студента
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+        assertThat(statistics.getEntityLoadCount()).isZero();
+
+        String facultyETag = mockMvc.perform(get("/faculty/" + faculty.getId()))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        statistics.clear();
+        mockMvc.perform(get("/faculty/" + faculty.getId()).header(HttpHeaders.IF_NONE_MATCH, facultyETag))
+                .andExpect(status().isNotModified());
+        //версия факультета берётся из кеша
+        assertThat(statistics.getPrepareStatementCount()).isZero();
+    }
+
+    //Изменяет свой факультет, а не общий, который читают остальные тесты
+    @Test
+    public void testIfMatch() throws Exception {
+        Faculty ravenclaw = facultyRepository.save(new Faculty(null, "синий", "Когтевран"));
+        try {
+            String eTag = mockMvc.perform(get("/faculty/" + ravenclaw.getId()))
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            String body = "{\"id\":" + ravenclaw.getId() + ",\"name\":\"Когтевран\",\"color\":\"синий\"}";
+
+            String newETag = mockMvc.perform(put("/faculty").contentType(MediaType.APPLICATION_JSON)
+                            .header(HttpHeaders.IF_MATCH, eTag).content(body))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+            assertThat(newETag).isNotEqualTo(eTag);
+
+            mockMvc.perform(put("/faculty").contentType(MediaType.APPLICATION_JSON)
+                            .header(HttpHeaders.IF_MATCH, eTag).content(body))
+                    .andExpect(status().isPreconditionFailed());
+            mockMvc.perform(get("/faculty/" + ravenclaw.getId()).header(HttpHeaders.IF_NONE_MATCH, eTag))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, newETag));
+        } finally {
+            facultyRepository.deleteById(ravenclaw.getId());
+        }
+    }
+
+    @Test
+    public void testSecondLevelCache() throws Exception {
+        mockMvc.perform(get("/student/" + student.getId())).andExpect(status().isOk());
+        assertStatements(0, get("/student/" + student.getId()));
+
+        mockMvc.perform(get("/student/between").param("min", "12").param("max", "13")).andExpect(status().isOk());
+        assertStatements(0, get("/student/between").param("min", "12").param("max", "13"));
+
+        //запись через Hibernate сбрасывает закешированные запросы по таблице student
+        mockMvc.perform(get("/student/filter").param("years", "99"))
+                .andExpect(jsonPath("$.length()").value(0));
+        Student neville = studentRepository.save(new Student(99, "Невилл", null));
+        try {
+            mockMvc.perform(get("/student/filter").param("years", "99"))
+                    .andExpect(jsonPath("$.length()").value(1));
+        } finally {
+            studentRepository.delete(neville);
+        }
+        mockMvc.perform(get("/student/filter").param("years", "99"))
+                .andExpect(jsonPath("$.length()").value(0));
+    }
+
+    @Test
+    public void testAvatarLists() throws Exception {
+        //страница и COUNT(*)
+        assertStatements(2, get("/avatar/list").param("offset", "0").param("limit", "10"));
+        assertStatements(1, get("/avatar/list/meta").param("limit", "10"));
+    }
+
+    private void assertStatements(long expected, RequestBuilder request) throws Exception {
+        statistics.clear();
+        mockMvc.perform(request).andExpect(status().isOk());
+        assertThat(statistics.getPrepareStatementCount())
+                .as("SQL statements for %s", request)
+                .isEqualTo(expected);
+    }
+}
@@ -8,21 +8,31 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import ru.hogwarts.school.model.Faculty;
 import ru.hogwarts.school.model.Student;
 import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.service.BatchLookup;
+import ru.hogwarts.school.service.RecentStudentsService;
+import ru.hogwarts.school.service.StudentImportService;
 import ru.hogwarts.school.service.StudentService;
+import ru.hogwarts.school.service.StudentStatisticsService;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.LongStream;
 
+import static org.hamcrest.Matchers.contains;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(StudentController.class)
+@Import(BatchLookup.class)
 public class StudentControllerWebMvcTest {
     @Autowired
     private MockMvc mockMvc;
@@ -30,6 +40,12 @@ public class StudentControllerWebMvcTest {
     private StudentRepository studentRepository;
     @SpyBean
     private StudentService studentService;
+    @MockBean
+    private StudentImportService studentImportService;
+    @MockBean
+    private RecentStudentsService recentStudentsService;
+    @MockBean
+    private StudentStatisticsService studentStatisticsService;
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     @Test
@@ -79,7 +95,7 @@ public class StudentControllerWebMvcTest {
         Student updated = new Student();
         updated.setId(1L);
         updated.setName("Обновлённый");
-        Mockito.when(studentService.editStudent(Mockito.any(Student.class))).thenReturn(updated);
+        Mockito.doReturn(updated).when(studentService).editStudent(Mockito.any(Student.class));
 
         mockMvc.perform(put("/student")
                         .contentType(MediaType.APPLICATION_JSON)
@@ -94,13 +110,27 @@ public class StudentControllerWebMvcTest {
         request.setId(1L);
         request.setName("Никто");
 
-        Mockito.when(studentService.editStudent(Mockito.any(Student.class))).thenReturn(null);
+        Mockito.doReturn(null).when(studentService).editStudent(Mockito.any(Student.class));
         mockMvc.perform(put("/student")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(request)))
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void testEditStudent_versionMismatch() throws Exception {
+        Student current = new Student(11, "Гарри", 1L);
+        current.setVersion(3);
+        when(studentRepository.findById(1L)).thenReturn(Optional.of(current));
+
+        mockMvc.perform(put("/student")
+                        .header(HttpHeaders.IF_MATCH, "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new Student(12, "Гарри", 1L))))
+                .andExpect(status().isPreconditionFailed());
+        Mockito.verify(studentRepository, Mockito.never()).save(Mockito.any(Student.class));
+    }
+
     @Test
     public void testDeleteStudent() throws Exception {
         Student deleted = new Student();
@@ -150,10 +180,48 @@ public class StudentControllerWebMvcTest {
 
         student.setFaculty(faculty);
 
-        Mockito.when(studentRepository.findById(1L)).thenReturn(Optional.of(student));
+        Mockito.when(studentRepository.findFacultyByStudentId(1L)).thenReturn(Optional.of(student.getFaculty()));
 
         mockMvc.perform(get("/student/faculty/1"))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.name").value("Гриффиндор"));
     }
+
+    @Test
+    public void testSearchStudents() throws Exception {
+        mockMvc.perform(get("/student/search").param("prefix", "гар_100%").param("limit", "500"))
+                .andExpect(status().isOk());
+        Mockito.verify(studentRepository).searchByName("ГАР!_100!%%", "%", Limit.of(100));
+
+        mockMvc.perform(get("/student/search"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testStudentTotals() throws Exception {
+        when(studentStatisticsService.getNumberOfStudents()).thenReturn(3);
+        when(studentStatisticsService.getAvgOfStudents()).thenReturn(12);
+        when(studentStatisticsService.getAverageAge()).thenReturn(12.5);
+
+        mockMvc.perform(get("/student/getNumber")).andExpect(status().isOk()).andExpect(content().string("3"));
+        mockMvc.perform(get("/student/getAvg")).andExpect(status().isOk()).andExpect(content().string("12"));
+        mockMvc.perform(get("/student/average-age")).andExpect(status().isOk()).andExpect(content().string("12.5"));
+        Mockito.verifyNoInteractions(studentRepository);
+    }
+
+    @Test
+    public void testGetStudentsByIds() throws Exception {
+        when(studentRepository.findByIdIn(List.of(3L, 1L, 2L)))
+                .thenReturn(List.of(new Student(11, "Гарри", 1L), new Student(12, "Гермиона", 3L)));
+
+        mockMvc.perform(get("/student").param("ids", "3,1,2,3"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].name").value(contains("Гермиона", "Гарри")))
+                .andExpect(jsonPath("$.missing").value(contains(2)));
+
+        String tooMany = String.join(",", LongStream.rangeClosed(1, 101)
+                .mapToObj(Long::toString).toList());
+        mockMvc.perform(get("/student").param("ids", tooMany))
+                .andExpect(status().isBadRequest());
+    }
 }
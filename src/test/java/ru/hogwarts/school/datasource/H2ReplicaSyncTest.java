@@ -0,0 +1,55 @@
+package ru.hogwarts.school.datasource;
+
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class H2ReplicaSyncTest {
+    private static final String PRIMARY_URL = "jdbc:h2:mem:sync-primary;DB_CLOSE_DELAY=-1";
+    private static final String LAG_QUERY =
+            "SELECT DATEDIFF('MILLISECOND', synced_at, CURRENT_TIMESTAMP) / 1000.0 FROM replica_sync";
+
+    @Test
+    public void testReplicaFollowsPrimaryAfterSync() {
+        DataSource primary = database(PRIMARY_URL);
+        DataSource replica = database("jdbc:h2:mem:sync-replica;DB_CLOSE_DELAY=-1");
+        JdbcTemplate primaryJdbc = new JdbcTemplate(primary);
+        JdbcTemplate replicaJdbc = new JdbcTemplate(replica);
+        primaryJdbc.execute("CREATE TABLE faculty (id BIGINT PRIMARY KEY, name VARCHAR(255))");
+        primaryJdbc.execute("CREATE TABLE student (id BIGINT PRIMARY KEY, name VARCHAR(255), " +
+                "faculty_id BIGINT REFERENCES faculty (id))");
+        primaryJdbc.update("INSERT INTO faculty VALUES (1, 'Гриффиндор')");
+        primaryJdbc.update("INSERT INTO student VALUES (1, 'Гарри', 1)");
+
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replica, LAG_QUERY);
+        monitor.checkLag();
+        //до первой синхронизации реплика недоступна
+        assertThat(monitor.getLagSeconds()).isInfinite();
+
+        H2ReplicaSync sync = new H2ReplicaSync(primary, replica, PRIMARY_URL, "sa", "");
+        sync.sync();
+        assertThat(replicaJdbc.queryForObject("SELECT name FROM student WHERE id = 1", String.class))
+                .isEqualTo("Гарри");
+        monitor.checkLag();
+        assertThat(monitor.getLagSeconds()).isBetween(0.0, 5.0);
+
+        //изменения видны на реплике только после следующей синхронизации
+        primaryJdbc.update("DELETE FROM student");
+        primaryJdbc.update("INSERT INTO student VALUES (2, 'Рон', 1)");
+        assertThat(replicaJdbc.queryForList("SELECT name FROM student", String.class)).containsExactly("Гарри");
+        sync.sync();
+        assertThat(replicaJdbc.queryForList("SELECT name FROM student", String.class)).containsExactly("Рон");
+    }
+
+    private static DataSource database(String url) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL(url);
+        dataSource.setUser("sa");
+        dataSource.setPassword("");
+        return dataSource;
+    }
+}
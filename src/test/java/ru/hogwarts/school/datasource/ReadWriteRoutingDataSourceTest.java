@@ -0,0 +1,190 @@
+package ru.hogwarts.school.datasource;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import ru.hogwarts.school.cache.ResponseCache;
+import ru.hogwarts.school.cache.ResponseCacheFilter;
+import ru.hogwarts.school.metrics.MetricsRegistry;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+//Основную базу и реплику изображают две разные базы H2: по содержимому таблицы marker видно, куда ушёл запрос.
+public class ReadWriteRoutingDataSourceTest {
+    private final DataSource primary = database("primary");
+    private final DataSource replica = database("replica");
+    private final AtomicLong now = new AtomicLong(1_700_000_000_000L);
+    private final MetricsRegistry registry = new MetricsRegistry();
+
+    @AfterEach
+    public void resetRequest() {
+        RequestContextHolder.resetRequestAttributes();
+    }
+
+    @Test
+    public void testReadOnlyTransactionsGoToReplica() {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replica, "SELECT 0");
+        monitor.checkLag();
+        DataSource dataSource = routing(monitor);
+
+        assertThat(read(dataSource, true)).isEqualTo("replica");
+        assertThat(read(dataSource, false)).isEqualTo("primary");
+        //запись вне HTTP-запроса никого не привязывает к основной базе
+        assertThat(read(dataSource, true)).isEqualTo("replica");
+        assertThat(registry.counter("datasource.routing", "target", "replica", "access", "read").sum())
+                .isEqualTo(2);
+    }
+
+    @Test
+    public void testWritingClientReadsOwnWrites() {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replica, "SELECT 0");
+        monitor.checkLag();
+        DataSource dataSource = routing(monitor);
+
+        MockHttpServletResponse writeResponse = startRequest(null);
+        assertThat(read(dataSource, false)).isEqualTo("primary");
+        //в том же запросе и в следующих запросах с cookie читаем с основной базы
+        assertThat(read(dataSource, true)).isEqualTo("primary");
+        Cookie pin = writeResponse.getCookie(ReadWriteRoutingDataSource.PRIMARY_UNTIL_COOKIE);
+        assertThat(pin).isNotNull();
+
+        startRequest(pin);
+        assertThat(read(dataSource, true)).isEqualTo("primary");
+        //другой клиент продолжает читать с реплики
+        startRequest(null);
+        assertThat(read(dataSource, true)).isEqualTo("replica");
+
+        now.addAndGet(Duration.ofSeconds(5).toMillis());
+        startRequest(pin);
+        assertThat(read(dataSource, true)).isEqualTo("replica");
+    }
+
+    @Test
+    public void testRollbackDoesNotPinClient() {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replica, "SELECT 0");
+        monitor.checkLag();
+        DataSource dataSource = routing(monitor);
+
+        MockHttpServletResponse response = startRequest(null);
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transaction.executeWithoutResult(status -> {
+            new JdbcTemplate(dataSource).queryForObject("SELECT name FROM marker", String.class);
+            status.setRollbackOnly();
+        });
+
+        assertThat(response.getCookie(ReadWriteRoutingDataSource.PRIMARY_UNTIL_COOKIE)).isNull();
+        assertThat(read(dataSource, true)).isEqualTo("replica");
+    }
+
+    @Test
+    public void testLaggingReplicaIsSkipped() {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replica, "SELECT 10");
+        DataSource dataSource = routing(monitor);
+        //отставание ещё не измерено
+        assertThat(read(dataSource, true)).isEqualTo("primary");
+
+        monitor.checkLag();
+        assertThat(monitor.getLagSeconds()).isEqualTo(10);
+        assertThat(read(dataSource, true)).isEqualTo("primary");
+    }
+
+    //Основная база уже изменена, реплика ещё отдаёт старое значение: ответ, который попадёт в кеш,
+    //должен прийти из основной базы, хотя клиент к ней не привязан
+    @Test
+    public void testLaggingReplicaDoesNotRepopulateCache() throws Exception {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replica, "SELECT 0");
+        monitor.checkLag();
+        DataSource dataSource = routing(monitor);
+        ResponseCacheFilter filter = new ResponseCacheFilter(new ResponseCache(10, Duration.ofMinutes(10), 256),
+                Map.of("/faculty/filter", ResponseCache.Group.FACULTIES));
+        HttpServlet controller = new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+                response.getWriter().write(read(dataSource, true));
+            }
+        };
+
+        for (int i = 0; i < 2; i++) {
+            MockHttpServletResponse response = new MockHttpServletResponse();
+            filter.doFilter(new MockHttpServletRequest("GET", "/faculty/filter"), response,
+                    new MockFilterChain(controller));
+            assertThat(response.getContentAsString()).isEqualTo("primary");
+        }
+        //вне загрузки для кеша чтение по-прежнему идёт на реплику
+        assertThat(read(dataSource, true)).isEqualTo("replica");
+    }
+
+    @Test
+    public void testReplicaTransactionIsMarked() {
+        ReplicaLagMonitor monitor = new ReplicaLagMonitor(replica, "SELECT 0");
+        monitor.checkLag();
+        DataSource dataSource = routing(monitor);
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transaction.setReadOnly(true);
+
+        Boolean onReplica = transaction.execute(status -> {
+            new JdbcTemplate(dataSource).queryForObject("SELECT name FROM marker", String.class);
+            return ReadRouting.isReplicaTransaction();
+        });
+        assertThat(onReplica).isTrue();
+        assertThat(ReadRouting.isReplicaTransaction()).isFalse();
+        try (ReadRouting.Scope ignored = ReadRouting.primaryReads()) {
+            onReplica = transaction.execute(status -> {
+                new JdbcTemplate(dataSource).queryForObject("SELECT name FROM marker", String.class);
+                return ReadRouting.isReplicaTransaction();
+            });
+            assertThat(onReplica).isFalse();
+        }
+    }
+
+    private DataSource routing(ReplicaLagMonitor monitor) {
+        return new LazyConnectionDataSourceProxy(new ReadWriteRoutingDataSource(primary, replica, monitor,
+                Duration.ofSeconds(5), registry, now::get));
+    }
+
+    private static MockHttpServletResponse startRequest(Cookie cookie) {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (cookie != null) {
+            request.setCookies(cookie);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, response));
+        return response;
+    }
+
+    private static String read(DataSource dataSource, boolean readOnly) {
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transaction.setReadOnly(readOnly);
+        return transaction.execute(status ->
+                new JdbcTemplate(dataSource).queryForObject("SELECT name FROM marker", String.class));
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:routing-" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE IF NOT EXISTS marker (name VARCHAR(16))");
+        jdbc.execute("DELETE FROM marker");
+        jdbc.update("INSERT INTO marker VALUES (?)", name);
+        return dataSource;
+    }
+}
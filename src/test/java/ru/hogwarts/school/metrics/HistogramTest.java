@@ -0,0 +1,47 @@
+package ru.hogwarts.school.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class HistogramTest {
+
+    @Test
+    public void testBucketsCoverWholeRange() {
+        for (long value : new long[]{0, 1, 15, 16, 17, 1_000, 123_456_789, Long.MAX_VALUE}) {
+            int index = Histogram.bucketIndex(value);
+            assertThat(Histogram.bucketUpperBound(index)).isGreaterThanOrEqualTo(value);
+            if (index > 0) {
+                assertThat(Histogram.bucketUpperBound(index - 1)).isLessThan(value);
+            }
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 1_000; i++) {
+            histogram.record(i * 1_000L);
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertThat(snapshot.count()).isEqualTo(1_000);
+        assertThat(snapshot.max()).isEqualTo(1_000_000);
+        assertThat(snapshot.p50()).isBetween(500_000L, 500_000L * 107 / 100);
+        assertThat(snapshot.p99()).isBetween(990_000L, 1_000_000L);
+        assertThat(snapshot.p999()).isEqualTo(1_000_000);
+    }
+
+    @Test
+    public void testPrometheusFormat() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.timer("http.server.requests", "uri", "/student/{id}", "status", "200").record(2_000_000);
+        registry.counter("jdbc.connections.timeout", "pool", "main").increment();
+
+        String text = PrometheusFormat.write(registry.snapshot());
+        assertThat(text).contains("# TYPE http_server_requests_seconds summary\n");
+        assertThat(text).contains("http_server_requests_seconds_count{uri=\"/student/{id}\",status=\"200\"} 1\n");
+        assertThat(text).contains("http_server_requests_seconds{uri=\"/student/{id}\",status=\"200\",quantile=\"0.5\"}");
+        assertThat(text).contains("jdbc_connections_timeout_total{pool=\"main\"} 1\n");
+    }
+}
@@ -0,0 +1,63 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.hogwarts.school.model.Avatar;
+import ru.hogwarts.school.repositories.AvatarDataRepository;
+import ru.hogwarts.school.repositories.AvatarRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AvatarServiceTest {
+    private final AvatarRepository avatarRepository = Mockito.mock(AvatarRepository.class);
+    private final StudentRepository studentRepository = Mockito.mock(StudentRepository.class);
+    private final AvatarStorage avatarStorage = Mockito.mock(AvatarStorage.class);
+    private final AvatarService service = new AvatarService(avatarRepository, Mockito.mock(AvatarDataRepository.class),
+            studentRepository, avatarStorage,
+            Mockito.mock(AvatarThumbnailService.class), Mockito.mock(PlatformTransactionManager.class),
+            new BatchLookup(100, 100));
+    private final MockMultipartFile file = new MockMultipartFile("avatar", "harry.png", "image/png", new byte[]{1});
+
+    @Test
+    public void testUnknownStudentIsNotStored() throws Exception {
+        assertThat(service.uploadAvatar(1L, file)).isEqualTo(AvatarService.UploadResult.STUDENT_NOT_FOUND);
+
+        Mockito.verifyNoInteractions(avatarStorage);
+    }
+
+    @Test
+    public void testUnrecognizedContentIsRejected() throws Exception {
+        //Content-Type и имя файла клиента не делают HTML изображением
+        MockMultipartFile html = new MockMultipartFile("avatar", "harry.png", "image/png",
+                "<html><script>alert(1)</script>".getBytes(StandardCharsets.UTF_8));
+        Mockito.when(studentRepository.existsById(1L)).thenReturn(true);
+        Mockito.when(avatarStorage.store(Mockito.any(InputStream.class)))
+                .thenReturn(new AvatarStorage.StoredBlob("abcd", 31, null));
+
+        assertThat(service.uploadAvatar(1L, html)).isEqualTo(AvatarService.UploadResult.UNSUPPORTED_MEDIA_TYPE);
+
+        Mockito.verify(avatarRepository, Mockito.never()).save(Mockito.any());
+        Mockito.verify(avatarStorage).releaseIfUnreferenced("abcd", 0);
+    }
+
+    @Test
+    public void testBlobReleasedWhenMetadataNotSaved() throws Exception {
+        Mockito.when(studentRepository.existsById(1L)).thenReturn(true);
+        Mockito.when(avatarStorage.store(Mockito.any(InputStream.class)))
+                .thenReturn(new AvatarStorage.StoredBlob("abcd", 1, "image/png"));
+        Mockito.when(avatarRepository.save(Mockito.any(Avatar.class)))
+                .thenThrow(new DataIntegrityViolationException("student удалён"));
+
+        assertThatThrownBy(() -> service.uploadAvatar(1L, file)).isInstanceOf(DataIntegrityViolationException.class);
+
+        Mockito.verify(avatarStorage).releaseIfUnreferenced("abcd", 0);
+    }
+}
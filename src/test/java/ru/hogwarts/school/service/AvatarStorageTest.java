@@ -0,0 +1,99 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AvatarStorageTest {
+    @TempDir
+    Path root;
+
+    @Test
+    public void testStoreComputesHashSizeAndType() throws Exception {
+        //буфер меньше сигнатуры WEBP: заголовок собирается из нескольких чтений
+        AvatarStorage storage = new AvatarStorage(root.toString(), Duration.ZERO, 8, 1);
+        byte[] content = "RIFF\0\0\0\0WEBPVP8 какие-то данные".getBytes(StandardCharsets.UTF_8);
+
+        AvatarStorage.StoredBlob blob = storage.store(new ByteArrayInputStream(content));
+
+        String expectedHash = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        assertThat(blob).isEqualTo(new AvatarStorage.StoredBlob(expectedHash, content.length, "image/webp"));
+        assertThat(Files.readAllBytes(storage.resolve(blob.hash()))).isEqualTo(content);
+        try (var leftovers = Files.list(root.resolve("tmp"))) {
+            assertThat(leftovers).isEmpty();
+        }
+    }
+
+    @Test
+    public void testSniffMediaType() {
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G', 0x0D, 0x0A, 0x1A, 0x0A, 0, 0, 0, 0};
+        byte[] jpeg = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0};
+
+        assertThat(AvatarStorage.sniffMediaType(png, png.length)).isEqualTo("image/png");
+        assertThat(AvatarStorage.sniffMediaType(jpeg, jpeg.length)).isEqualTo("image/jpeg");
+        assertThat(AvatarStorage.sniffMediaType(png, 4)).isNull();
+        assertThat(AvatarStorage.sniffMediaType("<svg".getBytes(StandardCharsets.US_ASCII), 4)).isNull();
+    }
+
+    @Test
+    public void testRecentBlobIsCollectedAfterGracePeriod() throws Exception {
+        AvatarStorage storage = new AvatarStorage(root.toString(), Duration.ofMinutes(10), 8, 1);
+        AvatarStorage.StoredBlob blob = storage.store(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        Path thumbnail = storage.resolveDerivative(blob.hash(), "64.png");
+        Files.write(thumbnail, new byte[]{4});
+
+        //записан только что - не удаляется и в сборку пока не попадает
+        storage.releaseIfUnreferenced(blob.hash(), 0);
+        assertThat(storage.exists(blob.hash())).isTrue();
+        assertThat(storage.findReleaseCandidates()).isEmpty();
+
+        Instant old = Instant.now().minus(Duration.ofMinutes(11));
+        Files.setLastModifiedTime(storage.resolve(blob.hash()), FileTime.from(old));
+        Files.setLastModifiedTime(thumbnail, FileTime.from(old));
+        assertThat(storage.findReleaseCandidates()).containsExactly(blob.hash());
+
+        storage.releaseIfUnreferenced(blob.hash(), 1);
+        assertThat(storage.exists(blob.hash())).isTrue();
+        storage.releaseIfUnreferenced(blob.hash(), 0);
+        assertThat(storage.exists(blob.hash())).isFalse();
+        assertThat(thumbnail).doesNotExist();
+    }
+
+    @Test
+    public void testDerivativesReleasedWithoutOriginal() throws Exception {
+        AvatarStorage storage = new AvatarStorage(root.toString(), Duration.ZERO, 8, 1);
+        AvatarStorage.StoredBlob blob = storage.store(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+        Path thumbnail = storage.resolveDerivative(blob.hash(), "64.png");
+        Files.write(thumbnail, new byte[]{4});
+        Files.delete(storage.resolve(blob.hash()));
+
+        storage.releaseIfUnreferenced(blob.hash(), 0);
+
+        assertThat(thumbnail).doesNotExist();
+    }
+
+    @Test
+    public void testDerivativeIsNotWrittenAfterRelease() throws Exception {
+        AvatarStorage storage = new AvatarStorage(root.toString(), Duration.ZERO, 8, 1);
+        AvatarStorage.StoredBlob blob = storage.store(new ByteArrayInputStream(new byte[]{1, 2, 3}));
+
+        assertThat(storage.writeDerivative(blob.hash(), "64.png", file -> Files.write(file, new byte[]{4}))).isTrue();
+        storage.releaseIfUnreferenced(blob.hash(), 0);
+
+        //миниатюра, достроенная после удаления оригинала, осталась бы на диске навсегда
+        assertThat(storage.writeDerivative(blob.hash(), "128.png", file -> Files.write(file, new byte[]{5}))).isFalse();
+        assertThat(storage.resolveDerivative(blob.hash(), "64.png")).doesNotExist();
+        assertThat(storage.resolveDerivative(blob.hash(), "128.png")).doesNotExist();
+    }
+}
@@ -0,0 +1,51 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AvatarThumbnailServiceTest {
+    @TempDir
+    Path root;
+
+    @Test
+    public void testLargeImageIsSubsampledBeforeScaling() throws Exception {
+        AvatarStorage storage = new AvatarStorage(root.toString(), Duration.ZERO, 8, 1);
+        AvatarThumbnailService service = new AvatarThumbnailService(storage, List.of(64), 1, 1, 1_000_000,
+                new MockEnvironment());
+        String hash = store(storage, 800, 600);
+
+        service.createThumbnails(hash);
+
+        BufferedImage thumbnail = ImageIO.read(storage.resolveDerivative(hash, "64.jpg").toFile());
+        assertThat(thumbnail.getWidth()).isEqualTo(64);
+    }
+
+    @Test
+    public void testImageAboveMaxPixelsIsSkipped() throws Exception {
+        AvatarStorage storage = new AvatarStorage(root.toString(), Duration.ZERO, 8, 1);
+        AvatarThumbnailService service = new AvatarThumbnailService(storage, List.of(64), 1, 1, 10_000,
+                new MockEnvironment());
+        String hash = store(storage, 200, 100);
+
+        service.createThumbnails(hash);
+
+        assertThat(storage.resolveDerivative(hash, "64.jpg")).doesNotExist();
+    }
+
+    private static String store(AvatarStorage storage, int width, int height) throws Exception {
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        ImageIO.write(new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), "png", png);
+        return storage.store(new ByteArrayInputStream(png.toByteArray())).hash();
+    }
+}
@@ -0,0 +1,53 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FacultyServiceTest {
+    private final FacultyRepository facultyRepository = Mockito.mock(FacultyRepository.class);
+    private final FacultyService service = new FacultyService(facultyRepository,
+            Mockito.mock(StudentRepository.class), Mockito.mock(ApplicationEventPublisher.class),
+            new BatchLookup(100, 100), 100, Duration.ofMinutes(10), Duration.ofSeconds(2));
+
+    @Test
+    public void testCachedFacultyIsCopiedForEachCaller() {
+        Mockito.when(facultyRepository.findById(1L))
+                .thenReturn(Optional.of(new Faculty(1L, "красный", "Гриффиндор")));
+
+        Faculty first = service.getFaculty(1);
+        first.setName("Слизерин");
+        Faculty second = service.getFaculty(1);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.getName()).isEqualTo("Гриффиндор");
+        Mockito.verify(facultyRepository).findById(1L);
+    }
+
+    @Test
+    public void testCachedFilterResultIsCopiedForEachCaller() {
+        Mockito.when(facultyRepository.findByColorIgnoreCase("красный"))
+                .thenReturn(List.of(new Faculty(1L, "красный", "Гриффиндор")));
+
+        service.filterFaculties(null, "красный").iterator().next().setColor("зелёный");
+
+        assertThat(service.filterFaculties(null, "КРАСНЫЙ")).extracting(Faculty::getColor).containsExactly("красный");
+        Mockito.verify(facultyRepository).findByColorIgnoreCase("красный");
+    }
+
+    @Test
+    public void testEditWithoutIdIsNotFound() {
+        assertThat(service.editFaculty(new Faculty(null, "синий", "Когтевран"))).isNull();
+
+        Mockito.verifyNoInteractions(facultyRepository);
+    }
+}
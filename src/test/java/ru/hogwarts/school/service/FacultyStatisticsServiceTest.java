@@ -0,0 +1,119 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import ru.hogwarts.school.dto.FacultyStatistics;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.metrics.MetricsRegistry;
+import ru.hogwarts.school.repositories.FacultyAgeCount;
+import ru.hogwarts.school.repositories.FacultyRepository;
+import ru.hogwarts.school.repositories.StudentRepository;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FacultyStatisticsServiceTest {
+    private final StudentRepository studentRepository = Mockito.mock(StudentRepository.class);
+    private final FacultyRepository facultyRepository = Mockito.mock(FacultyRepository.class);
+    private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+    private final FacultyStatisticsService service =
+            new FacultyStatisticsService(studentRepository, facultyRepository, metricsRegistry,
+                    Mockito.mock(PlatformTransactionManager.class));
+
+    @Test
+    public void testInitialLoad() {
+        Mockito.when(studentRepository.countByFacultyAndAge()).thenReturn(List.of(row(1, 11, 2), row(1, 17, 1)));
+        service.initialize();
+
+        assertThat(service.getStatistics(1)).contains(new FacultyStatistics(1, 3, 13.0, 11, 17));
+    }
+
+    @Test
+    public void testIncrementalUpdatesAndFacultyMove() {
+        service.initialize();
+        StudentChangedEvent.Snapshot harry = new StudentChangedEvent.Snapshot(1, "Гарри", 11, 1L);
+        StudentChangedEvent.Snapshot ron = new StudentChangedEvent.Snapshot(2, "Рон", 13, 1L);
+        service.onStudentChanged(new StudentChangedEvent(null, harry));
+        service.onStudentChanged(new StudentChangedEvent(null, ron));
+        assertThat(service.getStatistics(1)).contains(new FacultyStatistics(1, 2, 12.0, 11, 13));
+
+        StudentChangedEvent.Snapshot movedRon = new StudentChangedEvent.Snapshot(2, "Рон", 14, 2L);
+        service.onStudentChanged(new StudentChangedEvent(ron, movedRon));
+        assertThat(service.getStatistics(1)).contains(new FacultyStatistics(1, 1, 11.0, 11, 11));
+        assertThat(service.getStatistics(2)).contains(new FacultyStatistics(2, 1, 14.0, 14, 14));
+
+        Mockito.when(facultyRepository.existsById(1L)).thenReturn(true);
+        service.onStudentChanged(new StudentChangedEvent(harry, null));
+        assertThat(service.getStatistics(1)).contains(FacultyStatistics.empty(1));
+        assertThat(service.getAllStatistics()).extracting(FacultyStatistics::facultyId).containsExactly(2L);
+    }
+
+    @Test
+    public void testReconciliationReportsDrift() {
+        service.initialize();
+        service.onStudentChanged(new StudentChangedEvent(null,
+                new StudentChangedEvent.Snapshot(1, "Гарри", 11, 1L)));
+        Mockito.when(studentRepository.countByFacultyAndAge()).thenReturn(List.of(row(1, 11, 1), row(3, 12, 1)));
+
+        service.reconcile();
+
+        assertThat(service.getStatistics(3)).contains(new FacultyStatistics(3, 1, 12.0, 12, 12));
+        assertThat(metricsRegistry.counter("faculty.stats.drift").sum()).isEqualTo(1);
+    }
+
+    @Test
+    public void testChangeCommittedDuringReconciliationIsReplayed() {
+        Mockito.when(studentRepository.countByFacultyAndAge()).thenReturn(List.of(row(1, 11, 1)));
+        service.initialize();
+
+        //Рон переведён на другой факультет после снимка сверки: запрос видит его на прежнем месте
+        StudentChangedEvent.Snapshot ron = new StudentChangedEvent.Snapshot(2, "Рон", 13, 1L);
+        commit(new StudentChangedEvent(null, ron));
+        Mockito.when(studentRepository.countByFacultyAndAge()).thenAnswer(invocation -> {
+            commit(new StudentChangedEvent(ron, new StudentChangedEvent.Snapshot(2, "Рон", 13, 2L)));
+            return List.of(row(1, 11, 1), row(1, 13, 1));
+        });
+        service.reconcile();
+
+        assertThat(service.getStatistics(1)).contains(new FacultyStatistics(1, 1, 11.0, 11, 11));
+        assertThat(service.getStatistics(2)).contains(new FacultyStatistics(2, 1, 13.0, 13, 13));
+        assertThat(metricsRegistry.counter("faculty.stats.drift").sum()).isZero();
+        assertThat(metricsRegistry.counter("faculty.stats.reconciliations").sum()).isEqualTo(2);
+    }
+
+    private void commit(StudentChangedEvent event) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.onStudentChanged(event);
+            TransactionSynchronizationUtils.triggerBeforeCommit(false);
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static FacultyAgeCount row(long facultyId, int age, long students) {
+        return new FacultyAgeCount() {
+            @Override
+            public Long getFacultyId() {
+                return facultyId;
+            }
+
+            @Override
+            public int getAge() {
+                return age;
+            }
+
+            @Override
+            public long getStudents() {
+                return students;
+            }
+        };
+    }
+}
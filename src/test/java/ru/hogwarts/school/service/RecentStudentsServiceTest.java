@@ -0,0 +1,57 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.data.domain.Limit;
+import ru.hogwarts.school.dto.RecentStudent;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.repositories.StudentSearchRow;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RecentStudentsServiceTest {
+    private final StudentRepository studentRepository = Mockito.mock(StudentRepository.class);
+    private final RecentStudentsService service = new RecentStudentsService(studentRepository, 2, 10);
+
+    private record Row(Long getId, String getName, int getAge) implements StudentSearchRow {
+    }
+
+    @Test
+    public void testOutOfOrderCommitFallsBackToDatabase() {
+        service.seed();
+        //id 10 выдан раньше, но закоммичен позже 11; затем 12 вытесняет 11, а 10 остаётся в буфере
+        service.onStudentChanged(created(11, "Гарри"));
+        service.onStudentChanged(created(10, "Рон"));
+        service.onStudentChanged(created(12, "Гермиона"));
+        Mockito.when(studentRepository.findLatest(10, Limit.of(10)))
+                .thenReturn(List.of(new Row(12L, "Гермиона", 12), new Row(11L, "Гарри", 12)));
+
+        assertThat(service.getRecent(10, 10L)).extracting(RecentStudent::id).containsExactly(12L, 11L);
+        //12 новее вытесненного 11 - ответ из буфера
+        assertThat(service.getRecent(1, null)).extracting(RecentStudent::id).containsExactly(12L);
+        Mockito.verify(studentRepository).findLatest(10, Limit.of(10));
+    }
+
+    @Test
+    public void testReseedPicksUpMissedChangesAndReplaysConcurrentOnes() {
+        service.seed();
+        service.onStudentChanged(created(1, "Гарри"));
+        //2 добавлен другим экземпляром, 3 закоммичен во время запроса к БД
+        Mockito.when(studentRepository.findLatest(0, Limit.of(2))).thenAnswer(invocation -> {
+            service.onStudentChanged(created(3, "Гермиона"));
+            return List.of(new Row(2L, "Рон", 12), new Row(1L, "Гарри", 12));
+        });
+
+        service.seed();
+
+        assertThat(service.getRecent(10, 1L)).extracting(RecentStudent::id).containsExactly(3L, 2L);
+        Mockito.verify(studentRepository, Mockito.never()).findLatest(Mockito.eq(1L), Mockito.any());
+    }
+
+    private static StudentChangedEvent created(long id, String name) {
+        return new StudentChangedEvent(null, new StudentChangedEvent.Snapshot(id, name, 12, null));
+    }
+}
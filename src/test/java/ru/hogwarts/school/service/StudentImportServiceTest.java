@@ -0,0 +1,119 @@
+package ru.hogwarts.school.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.hogwarts.school.dto.ImportReport;
+import ru.hogwarts.school.model.Faculty;
+import ru.hogwarts.school.model.Student;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class StudentImportServiceTest {
+    private final EntityManager entityManager = Mockito.mock(EntityManager.class);
+    private final PlatformTransactionManager transactionManager = Mockito.mock(PlatformTransactionManager.class);
+    private final ApplicationEventPublisher eventPublisher = Mockito.mock(ApplicationEventPublisher.class);
+    private final StudentImportService service = new StudentImportService(entityManager, transactionManager,
+            new ObjectMapper(), eventPublisher, 2);
+    private final List<Student> persisted = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        Mockito.doAnswer(invocation -> {
+            Student student = invocation.getArgument(0);
+            if (student.getName().startsWith("Ошибка")) {
+                throw new PersistenceException("нарушено ограничение", new IllegalStateException("age_check"));
+            }
+            student.setId(persisted.size() + 1L);
+            persisted.add(student);
+            return null;
+        }).when(entityManager).persist(Mockito.any(Student.class));
+        Mockito.when(entityManager.getReference(Mockito.eq(Faculty.class), Mockito.anyLong()))
+                .thenAnswer(invocation -> {
+                    Faculty faculty = new Faculty();
+                    faculty.setId(invocation.getArgument(1));
+                    return faculty;
+                });
+    }
+
+    @Test
+    public void testSplitCsvQuotedFields() {
+        assertThat(StudentImportService.splitCsv("Гарри,11,1")).containsExactly("Гарри", "11", "1");
+        assertThat(StudentImportService.splitCsv("\"Поттер, Гарри\",11,")).containsExactly("Поттер, Гарри", "11", "");
+        assertThat(StudentImportService.splitCsv("\"Гарри \"\"Избранный\"\"\",17"))
+                .containsExactly("Гарри \"Избранный\"", "17");
+        assertThatThrownBy(() -> StudentImportService.splitCsv("\"Гарри,11"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testCsvHeaderIsSkippedOnlyOnFirstLine() throws IOException {
+        ImportReport report = service.importStudents(body("NAME,age,facultyId", "Гарри,11,1", "name,12"),
+                StudentImportService.Format.CSV);
+
+        //Строка "name,..." после первой - обычные данные
+        assertThat(report.imported()).isEqualTo(2);
+        assertThat(report.failed()).isZero();
+        assertThat(persisted).extracting(Student::getName).containsExactly("Гарри", "name");
+        assertThat(persisted.get(0).getFaculty().getId()).isEqualTo(1L);
+    }
+
+    @Test
+    public void testBatchesAreCommittedSeparately() throws IOException {
+        ImportReport report = service.importStudents(body(
+                "{\"name\":\"Гарри\",\"age\":11,\"facultyId\":1}",
+                "",
+                "{\"name\":\"Рон\",\"age\":11}",
+                "{\"name\":\"Гермиона\",\"age\":12}"), StudentImportService.Format.NDJSON);
+
+        assertThat(report.imported()).isEqualTo(3);
+        assertThat(report.errors()).isEmpty();
+        Mockito.verify(transactionManager, Mockito.times(2)).getTransaction(Mockito.any());
+        Mockito.verify(transactionManager, Mockito.times(2)).commit(Mockito.any());
+        Mockito.verify(entityManager, Mockito.times(2)).clear();
+        Mockito.verify(eventPublisher, Mockito.times(3)).publishEvent(Mockito.any(Object.class));
+    }
+
+    @Test
+    public void testFailedBatchIsRolledBackAndImportContinues() throws IOException {
+        ImportReport report = service.importStudents(body("Гарри,11", "Ошибка,200", "Рон,11", "Гермиона,12"),
+                StudentImportService.Format.CSV);
+
+        assertThat(report.imported()).isEqualTo(2);
+        assertThat(report.failed()).isEqualTo(2);
+        assertThat(report.errors()).containsExactly(new ImportReport.BatchError(1, 2, "age_check"));
+        Mockito.verify(transactionManager).rollback(Mockito.any());
+        Mockito.verify(transactionManager).commit(Mockito.any());
+    }
+
+    @Test
+    public void testReportedErrorsAreTruncated() throws IOException {
+        String[] lines = IntStream.range(0, 150).mapToObj(i -> "без возраста").toArray(String[]::new);
+
+        ImportReport report = service.importStudents(body(lines), StudentImportService.Format.CSV);
+
+        assertThat(report.failed()).isEqualTo(150);
+        assertThat(report.errors()).hasSize(100);
+        Mockito.verifyNoInteractions(transactionManager);
+    }
+
+    private static ByteArrayInputStream body(String... lines) {
+        return new ByteArrayInputStream(Arrays.stream(lines).collect(Collectors.joining("\n"))
+                .getBytes(StandardCharsets.UTF_8));
+    }
+}
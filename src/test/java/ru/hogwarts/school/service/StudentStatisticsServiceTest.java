@@ -0,0 +1,170 @@
+package ru.hogwarts.school.service;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import ru.hogwarts.school.cache.ResponseCache;
+import ru.hogwarts.school.event.StudentChangedEvent;
+import ru.hogwarts.school.metrics.MetricsRegistry;
+import ru.hogwarts.school.repositories.StudentRepository;
+import ru.hogwarts.school.repositories.StudentTotals;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StudentStatisticsServiceTest {
+    private final StudentRepository studentRepository = Mockito.mock(StudentRepository.class);
+    private final MetricsRegistry metricsRegistry = new MetricsRegistry();
+    private final ResponseCache responseCache = Mockito.spy(new ResponseCache(10, Duration.ofMinutes(1), 256));
+    private final StudentStatisticsService service =
+            new StudentStatisticsService(studentRepository, metricsRegistry, responseCache,
+                    Mockito.mock(PlatformTransactionManager.class));
+
+    @Test
+    public void testInitialLoadAndIncrementalUpdates() {
+        Mockito.when(studentRepository.getTotals()).thenReturn(totals(2, 24));
+        service.initialize();
+        assertThat(service.getNumberOfStudents()).isEqualTo(2);
+        assertThat(service.getAverageAge()).isEqualTo(12.0);
+
+        StudentChangedEvent.Snapshot harry = new StudentChangedEvent.Snapshot(3, "Гарри", 11, null);
+        service.onStudentChanged(new StudentChangedEvent(null, harry));
+        assertThat(service.getNumberOfStudents()).isEqualTo(3);
+        assertThat(service.getAvgOfStudents()).isEqualTo(11);
+        assertThat(service.getAverageAge()).isEqualTo(35.0 / 3);
+
+        StudentChangedEvent.Snapshot olderHarry = new StudentChangedEvent.Snapshot(3, "Гарри", 17, null);
+        service.onStudentChanged(new StudentChangedEvent(harry, olderHarry));
+        assertThat(service.getAverageAge()).isEqualTo(41.0 / 3);
+
+        service.onStudentChanged(new StudentChangedEvent(olderHarry, null));
+        assertThat(service.getNumberOfStudents()).isEqualTo(2);
+        assertThat(service.getAverageAge()).isEqualTo(12.0);
+        Mockito.verify(studentRepository, Mockito.times(1)).getTotals();
+    }
+
+    @Test
+    public void testEmptyTable() {
+        Mockito.when(studentRepository.getTotals()).thenReturn(totals(0, 0));
+        service.initialize();
+
+        assertThat(service.getNumberOfStudents()).isZero();
+        assertThat(service.getAvgOfStudents()).isNull();
+        assertThat(service.getAverageAge()).isZero();
+    }
+
+    @Test
+    public void testReconciliationCorrectsDrift() {
+        Mockito.when(studentRepository.getTotals()).thenReturn(totals(1, 11));
+        service.initialize();
+        service.reconcile();
+        assertThat(metricsRegistry.counter("student.stats.drift").sum()).isZero();
+
+        Mockito.when(studentRepository.getTotals()).thenReturn(totals(3, 40));
+        service.reconcile();
+
+        assertThat(service.getNumberOfStudents()).isEqualTo(3);
+        assertThat(service.getAvgOfStudents()).isEqualTo(13);
+        assertThat(metricsRegistry.counter("student.stats.drift").sum()).isEqualTo(1);
+        assertThat(metricsRegistry.counter("student.stats.reconciliations").sum()).isEqualTo(3);
+    }
+
+    @Test
+    public void testChangeCommittedDuringReconciliationIsReplayed() {
+        Mockito.when(studentRepository.getTotals()).thenReturn(totals(1, 11));
+        service.initialize();
+
+        //Студент закоммичен после снимка сверки: запрос его не видит, изменение повторяется на результате запроса
+        Mockito.when(studentRepository.getTotals()).thenAnswer(invocation -> {
+            commit(new StudentChangedEvent(null, new StudentChangedEvent.Snapshot(2, "Гарри", 13, null)));
+            return totals(1, 11);
+        });
+        service.reconcile();
+
+        assertThat(service.getNumberOfStudents()).isEqualTo(2);
+        assertThat(service.getAverageAge()).isEqualTo(12.0);
+        assertThat(metricsRegistry.counter("student.stats.drift").sum()).isZero();
+        assertThat(metricsRegistry.counter("student.stats.reconciliations").sum()).isEqualTo(2);
+    }
+
+    @Test
+    public void testSnapshotWaitsForCommittingChange() throws Exception {
+        Mockito.when(studentRepository.getTotals()).thenReturn(totals(1, 11));
+        service.initialize();
+        Mockito.clearInvocations(studentRepository);
+
+        //Коммит начался до снимка: снимок ждёт, пока изменение применится, и запрос его уже видит
+        TransactionSynchronizationManager.initSynchronization();
+        CompletableFuture<Void> reconciliation;
+        try {
+            service.onStudentChanged(new StudentChangedEvent(null,
+                    new StudentChangedEvent.Snapshot(2, "Гарри", 13, null)));
+            TransactionSynchronizationUtils.triggerBeforeCommit(false);
+            Mockito.when(studentRepository.getTotals()).thenReturn(totals(2, 24));
+            reconciliation = CompletableFuture.runAsync(service::reconcile);
+            Mockito.verify(studentRepository, Mockito.after(200).never()).startSnapshot();
+
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        reconciliation.get(5, TimeUnit.SECONDS);
+
+        assertThat(service.getNumberOfStudents()).isEqualTo(2);
+        assertThat(metricsRegistry.counter("student.stats.drift").sum()).isZero();
+        assertThat(metricsRegistry.counter("student.stats.reconciliations").sum()).isEqualTo(2);
+    }
+
+    @Test
+    public void testRolledBackChangeIsNotApplied() {
+        Mockito.when(studentRepository.getTotals()).thenReturn(totals(1, 11));
+        service.initialize();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.onStudentChanged(new StudentChangedEvent(null,
+                    new StudentChangedEvent.Snapshot(2, "Гарри", 13, null)));
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertThat(service.getNumberOfStudents()).isEqualTo(1);
+        service.reconcile();
+        assertThat(metricsRegistry.counter("student.stats.reconciliations").sum()).isEqualTo(2);
+    }
+
+    private void commit(StudentChangedEvent event) {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.onStudentChanged(event);
+            TransactionSynchronizationUtils.triggerBeforeCommit(false);
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_COMMITTED);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    private static StudentTotals totals(long students, long ageSum) {
+        return new StudentTotals() {
+            @Override
+            public long getStudents() {
+                return students;
+            }
+
+            @Override
+            public long getAgeSum() {
+                return ageSum;
+            }
+        };
+    }
+}
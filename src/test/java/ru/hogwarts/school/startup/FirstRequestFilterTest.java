@@ -0,0 +1,44 @@
+package ru.hogwarts.school.startup;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.hogwarts.school.metrics.MetricsRegistry;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FirstRequestFilterTest {
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private final StartupTimeRecorder recorder = new StartupTimeRecorder(registry);
+    private final FirstRequestFilter filter = new FirstRequestFilter(recorder);
+
+    @Test
+    public void testOnlyFirstRequestIsRecorded() throws Exception {
+        recorder.onStarted();
+        assertThat(recorder.isFirstRequestServed()).isFalse();
+
+        filter.doFilter(new MockHttpServletRequest("GET", "/student/1"), new MockHttpServletResponse(),
+                new MockFilterChain());
+        double firstRequest = startupTime("first_request");
+        Thread.sleep(20);
+        filter.doFilter(new MockHttpServletRequest("GET", "/student/2"), new MockHttpServletResponse(),
+                new MockFilterChain());
+
+        assertThat(recorder.isFirstRequestServed()).isTrue();
+        assertThat(startupTime("first_request")).isEqualTo(firstRequest).isGreaterThanOrEqualTo(startupTime("started"));
+        assertThat(registry.snapshot().gauges()).extracting(sample -> sample.tags().get("phase"))
+                .containsExactlyInAnyOrder("started", "first_request");
+    }
+
+    private double startupTime(String phase) {
+        List<MetricsRegistry.ValueSample> samples = registry.snapshot().gauges().stream()
+                .filter(sample -> sample.name().equals("application.startup.time")
+                        && phase.equals(sample.tags().get("phase")))
+                .toList();
+        assertThat(samples).hasSize(1);
+        return samples.get(0).value();
+    }
+}